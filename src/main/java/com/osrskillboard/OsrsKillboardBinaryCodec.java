@@ -0,0 +1,204 @@
+package com.osrskillboard;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of the kill and loot key payloads.
+ *
+ * A payload starts with a two byte magic and the schema version, followed by tagged fields. Numbers are
+ * zigzag varints, item names are dropped as the item id already identifies them, and world and account
+ * types are interned against a fixed table. Fields the schema doesn't know are carried as name/JSON pairs
+ * so the encoding never loses data. The tables are the schema, decoders are expected to share them.
+ */
+final class OsrsKillboardBinaryCodec
+{
+    static final String CONTENT_TYPE = "application/x-osrskillboard-kill; version=1";
+
+    static final byte MAGIC_0 = 'O';
+    static final byte MAGIC_1 = 'K';
+    static final int VERSION = 1;
+
+    static final int TAG_END = 0;
+    static final int TAG_UNKNOWN = 1;
+
+    // Field tags for schema version 1, the index in this list is the tag
+    static final List<String> FIELDS = Arrays.asList(
+            null, null,
+            "time", "world", "worldType", "localLocation", "worldLocation",
+            "pkerName", "pkerAccountType", "pkerCombatLevel", "pkerItemsEquipped", "pkerIsSkulled", "pkerCombatStats",
+            "victimName", "victimCombatLevel", "victimItemsEquipped", "victimIsSkulled",
+            "loot", "lootValue", "victimIsFriend", "victimIsClanMember", "pkerProfileId"
+    );
+
+    static final List<String> EQUIPMENT_SLOTS = Arrays.asList(
+            "Head", "Torso", "Legs", "Boots", "Hands", "Shield", "Weapon", "Amulet", "Cape");
+
+    static final List<String> COMBAT_STATS = Arrays.asList(
+            "attack", "strength", "defence", "hitpoints", "prayer", "magic", "ranged");
+
+    // Interned enum names, unknown names are written inline
+    static final List<String> WORLD_TYPES = Arrays.asList(
+            "MEMBERS", "PVP", "BOUNTY", "PVP_ARENA", "SKILL_TOTAL", "QUEST_SPEEDRUNNING", "HIGH_RISK",
+            "LAST_MAN_STANDING", "NOSAVE_MODE", "TOURNAMENT", "FRESH_START_WORLD", "DEADMAN", "SEASONAL",
+            "BETA_WORLD", "LEGACY_ONLY", "EOC_ONLY");
+
+    static final List<String> ACCOUNT_TYPES = Arrays.asList(
+            "NORMAL", "IRONMAN", "ULTIMATE_IRONMAN", "HARDCORE_IRONMAN", "GROUP_IRONMAN", "HARDCORE_GROUP_IRONMAN");
+
+    private OsrsKillboardBinaryCodec()
+    {
+    }
+
+    static byte[] encode(JsonObject payload)
+    {
+        final Writer out = new Writer();
+        out.write(MAGIC_0);
+        out.write(MAGIC_1);
+        out.writeVarInt(VERSION);
+
+        for (Map.Entry<String, JsonElement> entry : payload.entrySet())
+        {
+            final String name = entry.getKey();
+            final JsonElement value = entry.getValue();
+            final int tag = FIELDS.indexOf(name);
+
+            if (tag < 0 || value.isJsonNull())
+            {
+                out.writeVarInt(TAG_UNKNOWN);
+                out.writeString(name);
+                out.writeString(value.toString());
+                continue;
+            }
+
+            out.writeVarInt(tag);
+            switch (name)
+            {
+                case "time":
+                    final Instant time = Instant.parse(value.getAsString());
+                    out.writeVarLong(time.getEpochSecond());
+                    out.writeVarLong(time.getNano());
+                    break;
+                case "world":
+                case "pkerCombatLevel":
+                case "victimCombatLevel":
+                case "lootValue":
+                    out.writeVarLong(value.getAsLong());
+                    break;
+                case "worldType":
+                    writeWorldTypes(out, value.getAsString());
+                    break;
+                case "pkerAccountType":
+                    writeInterned(out, ACCOUNT_TYPES, value.getAsString());
+                    break;
+                case "pkerIsSkulled":
+                case "victimIsSkulled":
+                case "victimIsFriend":
+                case "victimIsClanMember":
+                    out.write(value.getAsBoolean() ? 1 : 0);
+                    break;
+                case "pkerItemsEquipped":
+                case "victimItemsEquipped":
+                    final JsonObject equipment = value.getAsJsonObject();
+                    for (String slot : EQUIPMENT_SLOTS)
+                    {
+                        final JsonObject item = equipment.getAsJsonObject(slot);
+                        out.writeVarLong(item.get("id").getAsInt());
+                        out.writeVarLong(item.get("price").getAsLong());
+                    }
+                    break;
+                case "pkerCombatStats":
+                    final JsonObject stats = value.getAsJsonObject();
+                    for (String stat : COMBAT_STATS)
+                    {
+                        out.writeVarLong(stats.get(stat).getAsInt());
+                    }
+                    break;
+                case "loot":
+                    final JsonArray loot = value.getAsJsonArray();
+                    out.writeVarInt(loot.size());
+                    for (JsonElement element : loot)
+                    {
+                        final JsonObject item = element.getAsJsonObject();
+                        out.writeVarLong(item.get("id").getAsInt());
+                        out.writeVarLong(item.get("qty").getAsInt());
+                        out.writeVarLong(item.get("price").getAsLong());
+                    }
+                    break;
+                default:
+                    out.writeString(value.getAsString());
+                    break;
+            }
+        }
+
+        out.writeVarInt(TAG_END);
+        return out.toByteArray();
+    }
+
+    private static void writeWorldTypes(Writer out, String worldTypes)
+    {
+        // EnumSet#toString form, e.g. "[MEMBERS, PVP]"
+        final String inner = worldTypes.substring(1, worldTypes.length() - 1).trim();
+        final String[] names = inner.isEmpty() ? new String[0] : inner.split(", ");
+        out.writeVarInt(names.length);
+        for (String name : names)
+        {
+            writeInterned(out, WORLD_TYPES, name);
+        }
+    }
+
+    private static void writeInterned(Writer out, List<String> table, String value)
+    {
+        final int index = table.indexOf(value);
+        out.writeVarInt(index + 1);
+        if (index < 0)
+        {
+            out.writeString(value);
+        }
+    }
+
+    private static final class Writer extends ByteArrayOutputStream
+    {
+        private Writer()
+        {
+            super(256);
+        }
+
+        void writeVarInt(int value)
+        {
+            while ((value & ~0x7F) != 0)
+            {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+
+        void writeVarLong(long value)
+        {
+            // zigzag so small negatives (-1 for empty equipment slots) stay one byte
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0)
+            {
+                write((int) ((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+            write((int) zigzag);
+        }
+
+        void writeString(String value)
+        {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+}
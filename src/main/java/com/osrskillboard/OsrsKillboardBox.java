@@ -3,7 +3,6 @@ package com.osrskillboard;
 import com.google.common.base.Strings;
 import lombok.AccessLevel;
 import lombok.Getter;
-import net.runelite.client.game.ItemManager;
 import net.runelite.client.ui.ColorScheme;
 import net.runelite.client.ui.FontManager;
 import net.runelite.client.util.AsyncBufferedImage;
@@ -15,8 +14,10 @@ import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.function.BiConsumer;
 
 
@@ -27,24 +28,30 @@ class OsrsKillboardBox extends JPanel
     private final JPanel itemContainer = new JPanel();
     private final JLabel priceLabel = new JLabel();
     private final JLabel subTitleLabel = new JLabel();
-    private final ItemManager itemManager;
+    private final OsrsKillboardIconCache iconCache;
+    private final Executor modelExecutor;
     @Getter(AccessLevel.PACKAGE)
     private final String id;
 
-    @Getter
-    private final List<OsrsKillboardRecord> records = new ArrayList<>();
+    @Getter(AccessLevel.PACKAGE)
+    private Totals totals;
 
-    private long totalPrice;
+    // Written on the EDT only, read by the model executor to skip models that are already stale
+    private volatile long modelVersion;
+    private boolean showCurrentValue;
     private boolean hideIgnoredItems;
     private BiConsumer<String, Boolean> onItemToggle;
 
     OsrsKillboardBox(
-            final ItemManager itemManager,
+            final OsrsKillboardIconCache iconCache,
+            final Executor modelExecutor,
             final String id,
             @Nullable final String subtitle)
     {
         this.id = id;
-        this.itemManager = itemManager;
+        this.totals = new Totals();
+        this.iconCache = iconCache;
+        this.modelExecutor = modelExecutor;
         this.onItemToggle = onItemToggle;
         this.hideIgnoredItems = hideIgnoredItems;
 
@@ -78,11 +85,6 @@ class OsrsKillboardBox extends JPanel
         add(itemContainer, BorderLayout.CENTER);
     }
 
-    private long getTotalKills()
-    {
-        return records.size();
-    }
-
     /**
      * Checks if this box matches specified record
      *
@@ -121,74 +123,94 @@ class OsrsKillboardBox extends JPanel
             throw new IllegalArgumentException(record.toString());
         }
 
-        records.add(record);
+        totals.add(record);
+    }
+
+    /**
+     * Replaces what the box shows with totals built elsewhere, the caller is expected to rebuild it.
+     */
+    void setTotals(final Totals totals)
+    {
+        this.totals = totals;
+        updatePrice();
     }
 
+    /**
+     * Prepares the contents of the box on the model executor and applies them on the EDT. Only the
+     * newest model is applied, ones that were overtaken by another rebuild are dropped.
+     */
     void rebuild()
     {
-        buildItems();
-        String priceTypeString = " ";
+        final long version = ++modelVersion;
+        final List<OsrsKillboardItem> items = totals.items();
+        final int kills = totals.getKills();
+        modelExecutor.execute(() ->
+        {
+            if (version != modelVersion)
+            {
+                return;
+            }
 
-        priceLabel.setText(QuantityFormatter.quantityToStackSize(totalPrice) + " gp");
-        priceLabel.setToolTipText(QuantityFormatter.formatNumber(totalPrice) + " gp");
+            final OsrsKillboardBoxModel model = OsrsKillboardBoxModel.build(version, items, kills, ITEMS_PER_ROW);
+            SwingUtilities.invokeLater(() -> apply(model));
+        });
+    }
 
-        final long kills = getTotalKills();
-        if (kills > 1)
+    private void apply(final OsrsKillboardBoxModel model)
+    {
+        if (model.getVersion() != modelVersion)
         {
-            subTitleLabel.setText("x " + kills);
+            return;
         }
 
-        validate();
+        updatePrice();
+
+        if (model.getKills() > 1)
+        {
+            subTitleLabel.setText("x " + model.getKills());
+        }
+
+        buildItems(model);
+        revalidate();
         repaint();
     }
 
     /**
-     * This method creates stacked items from the item list, calculates total price and then
-     * displays all the items in the UI.
+     * Switches the price label between the value at kill time and the current value.
      */
-    private void buildItems()
+    void setShowCurrentValue(boolean showCurrentValue)
     {
-        final List<OsrsKillboardItem> allItems = new ArrayList<>();
-        final List<OsrsKillboardItem> items = new ArrayList<>();
-        totalPrice = 0;
-
-        for (OsrsKillboardRecord record : records)
-        {
-            allItems.addAll(Arrays.asList(record.getItems()));
-        }
-
-        for (final OsrsKillboardItem entry : allItems)
-        {
-            totalPrice += entry.getGePrice();
-
-            int quantity = 0;
-            for (final OsrsKillboardItem i : items)
-            {
-                if (i.getId() == entry.getId())
-                {
-                    quantity = i.getQuantity();
-                    items.remove(i);
-                    break;
-                }
-            }
+        this.showCurrentValue = showCurrentValue;
+        updatePrice();
+    }
 
-            if (quantity > 0)
-            {
-                int newQuantity = entry.getQuantity() + quantity;
-                long pricePerItem = entry.getGePrice() == 0 ? 0 : (entry.getGePrice() / entry.getQuantity());
+    /**
+     * Values the box against a new price snapshot and refreshes the price label.
+     */
+    void reprice(final OsrsKillboardPriceSnapshot snapshot)
+    {
+        totals.reprice(snapshot);
+        updatePrice();
+    }
 
-                items.add(new OsrsKillboardItem(entry.getId(), entry.getName(), newQuantity, pricePerItem * newQuantity));
-            }
-            else
-            {
-                items.add(entry);
-            }
-        }
+    /**
+     * Refreshes the price label only.
+     */
+    void updatePrice()
+    {
+        final long price = showCurrentValue ? totals.getCurrentValue() : totals.getKillValue();
 
-        items.sort((i1, i2) -> Long.compare(i2.getGePrice(), i1.getGePrice()));
+        priceLabel.setText(QuantityFormatter.quantityToStackSize(price) + " gp");
+        priceLabel.setToolTipText(QuantityFormatter.formatNumber(price) + " gp" + (showCurrentValue ? " (current)" : ""));
+    }
 
-        // Calculates how many rows need to be display to fit all items
-        final int rowSize = ((items.size() % ITEMS_PER_ROW == 0) ? 0 : 1) + items.size() / ITEMS_PER_ROW;
+    /**
+     * Displays the items of a prepared model in the UI.
+     */
+    private void buildItems(final OsrsKillboardBoxModel model)
+    {
+        final List<OsrsKillboardItem> items = model.getItems();
+        final int rowSize = model.getRows();
 
         itemContainer.removeAll();
         itemContainer.setLayout(new GridLayout(rowSize, ITEMS_PER_ROW, 1, 1));
@@ -202,11 +224,11 @@ class OsrsKillboardBox extends JPanel
             {
                 final OsrsKillboardItem item = items.get(i);
                 final JLabel imageLabel = new JLabel();
-                imageLabel.setToolTipText(buildToolTip(item));
+                imageLabel.setToolTipText(model.getToolTips().get(i));
                 imageLabel.setVerticalAlignment(SwingConstants.CENTER);
                 imageLabel.setHorizontalAlignment(SwingConstants.CENTER);
 
-                AsyncBufferedImage itemImage = itemManager.getImage(item.getId(), item.getQuantity(), item.getQuantity() > 1);
+                AsyncBufferedImage itemImage = iconCache.getImage(item.getId(), item.getQuantity(), item.getQuantity() > 1);
 
                 itemImage.addTo(imageLabel);
 
@@ -219,12 +241,54 @@ class OsrsKillboardBox extends JPanel
         itemContainer.repaint();
     }
 
-    private static String buildToolTip(OsrsKillboardItem item)
+    /**
+     * What a box shows of its records: their items stacked by id, the kill count and the values. Kept
+     * instead of the records, so a box grouping a whole session only grows with its distinct items.
+     * May be built off the EDT, it belongs to the EDT once given to a box.
+     */
+    static final class Totals
     {
-        final String name = item.getName();
-        final int quantity = item.getQuantity();
-        final long price = item.getGePrice();
-        return name + " x " + quantity + " (" + QuantityFormatter.quantityToStackSize(price) + ") ";
+        private final Map<Integer, OsrsKillboardItem> items = new LinkedHashMap<>();
+        @Getter(AccessLevel.PACKAGE)
+        private int kills;
+        @Getter(AccessLevel.PACKAGE)
+        private long killValue;
+        @Getter(AccessLevel.PACKAGE)
+        private long currentValue;
+        // Newest record added, the box shows its subtitle and links to its kill
+        @Getter(AccessLevel.PACKAGE)
+        private OsrsKillboardRecord latest;
+
+        void add(final OsrsKillboardRecord record)
+        {
+            for (final OsrsKillboardItem item : record.getItems())
+            {
+                items.merge(item.getId(), item, Totals::stack);
+            }
+            kills++;
+            killValue += record.getKillValue();
+            currentValue += record.getCurrentValue();
+            latest = record;
+        }
+
+        /**
+         * Values the stacked items against a price snapshot, as re-pricing does with each record.
+         */
+        void reprice(final OsrsKillboardPriceSnapshot snapshot)
+        {
+            currentValue = snapshot.valueOf(items.values().toArray(new OsrsKillboardItem[0]));
+        }
+
+        List<OsrsKillboardItem> items()
+        {
+            return new ArrayList<>(items.values());
+        }
+
+        private static OsrsKillboardItem stack(final OsrsKillboardItem existing, final OsrsKillboardItem added)
+        {
+            final int newQuantity = added.getQuantity() + existing.getQuantity();
+            final long pricePerItem = added.getGePrice() == 0 ? 0 : (added.getGePrice() / added.getQuantity());
+            return new OsrsKillboardItem(added.getId(), added.getName(), newQuantity, pricePerItem * newQuantity);
+        }
     }
 }
-
@@ -0,0 +1,48 @@
+package com.osrskillboard;
+
+import lombok.Value;
+import net.runelite.client.util.QuantityFormatter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What a loot box shows, prepared off the EDT: the stacked items sorted by value with their tooltips,
+ * the kill count and the layout. The EDT only turns it into components.
+ */
+@Value
+class OsrsKillboardBoxModel
+{
+    private final long version;
+    private final List<OsrsKillboardItem> items;
+    private final List<String> toolTips;
+    private final int kills;
+    private final int rows;
+
+    /**
+     * @param items the stacked items of the box, sorted in place
+     */
+    static OsrsKillboardBoxModel build(final long version, final List<OsrsKillboardItem> items, final int kills, final int itemsPerRow)
+    {
+        items.sort((i1, i2) -> Long.compare(i2.getGePrice(), i1.getGePrice()));
+
+        final List<String> toolTips = new ArrayList<>(items.size());
+        for (OsrsKillboardItem item : items)
+        {
+            toolTips.add(buildToolTip(item));
+        }
+
+        // Calculates how many rows need to be display to fit all items
+        final int rows = ((items.size() % itemsPerRow == 0) ? 0 : 1) + items.size() / itemsPerRow;
+
+        return new OsrsKillboardBoxModel(version, items, toolTips, kills, rows);
+    }
+
+    private static String buildToolTip(OsrsKillboardItem item)
+    {
+        final String name = item.getName();
+        final int quantity = item.getQuantity();
+        final long price = item.getGePrice();
+        return name + " x " + quantity + " (" + QuantityFormatter.quantityToStackSize(price) + ") ";
+    }
+}
@@ -0,0 +1,176 @@
+package com.osrskillboard;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Tracks the outcome of recent API calls and stops sending requests once too many of them fail or are slow.
+ * After a cool down a single probe request is let through, closing the breaker again if it succeeds.
+ */
+@Slf4j
+class OsrsKillboardCircuitBreaker
+{
+    enum State
+    {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private static final int WINDOW_SIZE = 10;
+    private static final int MINIMUM_CALLS = 4;
+    private static final int FAILURE_RATE_PERCENT = 50;
+    private static final long SLOW_CALL_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final long OPEN_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    // Ring of the last call outcomes, true for a failed or slow call
+    private final boolean[] window = new boolean[WINDOW_SIZE];
+    private int windowIndex;
+    private int windowCount;
+    private int failures;
+
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probeInFlight;
+    private Consumer<State> listener;
+
+    OsrsKillboardCircuitBreaker()
+    {
+        this(OPEN_NANOS);
+    }
+
+    /**
+     * @param openNanos how long the breaker stays open before letting a probe through
+     */
+    OsrsKillboardCircuitBreaker(long openNanos)
+    {
+        this.openNanos = openNanos;
+    }
+
+    synchronized void setListener(Consumer<State> listener)
+    {
+        this.listener = listener;
+    }
+
+    synchronized State getState()
+    {
+        return state;
+    }
+
+    /**
+     * Checks if a request may be sent now. A caller that is allowed through must report the outcome
+     * through {@link #onSuccess(long)} or {@link #onFailure()}, or give it up through {@link #cancelProbe()}.
+     */
+    synchronized boolean tryAcquire()
+    {
+        switch (state)
+        {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < openNanos)
+                {
+                    return false;
+                }
+                transition(State.HALF_OPEN);
+                // fall through to let the probe out
+            case HALF_OPEN:
+            default:
+                if (probeInFlight)
+                {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    synchronized void onSuccess(long latencyNanos)
+    {
+        record(latencyNanos > SLOW_CALL_NANOS);
+    }
+
+    synchronized void onFailure()
+    {
+        record(true);
+    }
+
+    /**
+     * Called for a request that ended without an outcome, such as one cancelled by shutdown. It says
+     * nothing about the endpoint, but a probe must be released or the breaker would stay half open.
+     */
+    synchronized void cancelProbe()
+    {
+        if (state == State.HALF_OPEN)
+        {
+            probeInFlight = false;
+        }
+    }
+
+    private void record(boolean failed)
+    {
+        if (state == State.HALF_OPEN)
+        {
+            probeInFlight = false;
+            resetWindow();
+            if (failed)
+            {
+                open();
+            }
+            else
+            {
+                transition(State.CLOSED);
+            }
+            return;
+        }
+
+        if (windowCount == WINDOW_SIZE && window[windowIndex])
+        {
+            failures--;
+        }
+        window[windowIndex] = failed;
+        windowIndex = (windowIndex + 1) % WINDOW_SIZE;
+        windowCount = Math.min(windowCount + 1, WINDOW_SIZE);
+        if (failed)
+        {
+            failures++;
+        }
+
+        if (state == State.CLOSED && windowCount >= MINIMUM_CALLS && failures * 100 >= windowCount * FAILURE_RATE_PERCENT)
+        {
+            open();
+        }
+    }
+
+    private void open()
+    {
+        openedAt = System.nanoTime();
+        transition(State.OPEN);
+    }
+
+    private void resetWindow()
+    {
+        windowIndex = 0;
+        windowCount = 0;
+        failures = 0;
+    }
+
+    private void transition(State newState)
+    {
+        if (state == newState)
+        {
+            return;
+        }
+
+        log.debug("Killboard API circuit {} -> {}", state, newState);
+        state = newState;
+        if (listener != null)
+        {
+            listener.accept(newState);
+        }
+    }
+}
@@ -1,131 +1,809 @@
 package com.osrskillboard;
 
+import com.google.common.base.Splitter;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.inject.Inject;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.ChatMessageType;
+import net.runelite.client.RuneLite;
 import net.runelite.client.chat.ChatMessageManager;
 import net.runelite.client.chat.QueuedMessage;
 import okhttp3.*;
 
 import javax.swing.*;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Sends kills and loot key openings to OSRSKillboard.com and to any additional configured endpoints.
+ *
+ * Submissions are queued by the event handlers on the client thread and fanned out to one
+ * {@link OsrsKillboardEndpoint} per destination. The killboard endpoint runs a single worker, which owns
+ * the pker profile. Results are handed back through a queue that is drained on the EDT, which owns the panel.
+ */
 @Slf4j
 public class OsrsKillboardClient
 {
+    private static final int PANEL_QUEUE_CAPACITY = 64;
+    private static final File DATA_DIR = new File(RuneLite.RUNELITE_DIR, "osrskillboard");
+    private static final String PENDING_FILE = "pending.jsonl";
+    private static final String SHARED_LOG_FILE = "shared.log";
+    private static final String SHARED_SENDER_FILE = "shared.sender";
+    private static final int SHARED_LOG_SIZE = 4 * 1024 * 1024;
+    private static final long SHARED_POLL_MILLIS = 1_000;
+    // Marks a shared entry as the outcome of a sent submission rather than one waiting to be sent
+    private static final String SHARED_KILL_ID = "killId";
+
+    static final String DEFAULT_API_BASE = "https://api.osrskillboard.com/";
+    // One worker so the pker profile has a single owner, no retries as the server may have taken the kill
+    private static final int PRIMARY_CONCURRENCY = 1;
+    private static final int PRIMARY_RETRIES = 0;
+
     private final OkHttpClient httpClient;
-    private static final HttpUrl apiBase = HttpUrl.parse("https://api.osrskillboard.com/");
+    private final Gson gson;
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    private static final MediaType BINARY = MediaType.parse(OsrsKillboardBinaryCodec.CONTENT_TYPE);
+    // Responses telling us the referenced pker profile has expired or was never registered
+    private static final Set<Integer> UNKNOWN_PROFILE_CODES = Set.of(404, 409, 410);
+    // A server without profiles answers 404 to their registration
+    private static final int PROFILES_UNSUPPORTED_CODE = 404;
+    private static final long PROFILE_RETRY_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    // Killboard endpoint state, kept across restarts of the endpoints
+    @Getter(AccessLevel.PACKAGE)
+    private final OsrsKillboardCircuitBreaker circuitBreaker = new OsrsKillboardCircuitBreaker();
+    @Getter(AccessLevel.PACKAGE)
+    private final OsrsKillboardSubmissionMetrics metrics = new OsrsKillboardSubmissionMetrics();
+
+    private final OsrsKillboardSubmissionQueue<Runnable> panelUpdates = new OsrsKillboardSubmissionQueue<>(PANEL_QUEUE_CAPACITY);
+    private final AtomicBoolean panelDrainScheduled = new AtomicBoolean();
+
+    // Drains stopped endpoints so neither the EDT nor the client thread waits on the network, its thread stops when idle
+    private final ThreadPoolExecutor lifecycle = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r ->
+    {
+        final Thread thread = new Thread(r, "OsrsKillboard lifecycle");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean accepting;
+    private volatile OsrsKillboardEndpoint primary;
+    private volatile List<OsrsKillboardEndpoint> secondaries = List.of();
+    // Only set while sharing submissions with the other clients on this machine
+    private volatile OsrsKillboardSharedStore sharedStore;
+    private ScheduledFuture<?> sharedPoll;
+    // Panel of the latest start, where submissions handed over from stopped endpoints are shown
+    private volatile OsrsKillboardPanel panel;
+    // Holds the unsent submissions and the shared store, set before the first start
+    @Setter(AccessLevel.PACKAGE)
+    private File dataDir = DATA_DIR;
 
     @Inject
     private ChatMessageManager chatMessageManager;
 
+    @Inject
+    private OsrsKillboardConfig config;
+
+    @Inject
+    private ScheduledExecutorService executor;
+
     @Inject
     private OsrsKillboardClient(OkHttpClient client, Gson gson)
     {
         this.httpClient = client;
+        this.gson = gson;
+        this.lifecycle.allowCoreThreadTimeOut(true);
     }
 
-    public CompletableFuture<Void> submitPk(JsonObject killRecord, OsrsKillboardPanel panel, String victimName, int victimCombat, OsrsKillboardItem[] victimLoot)
+    /**
+     * Starts the configured endpoints and queues whatever was left unsent by the last shutdown.
+     */
+    synchronized void start(OsrsKillboardPanel panel)
     {
-        CompletableFuture<Void> future = new CompletableFuture<>();
+        this.panel = panel;
+        openEndpoints(panel);
+        accepting = true;
+        resumePending(panel);
+    }
 
-        HttpUrl url = apiBase.newBuilder()
-                .addPathSegment("pks")
-                .build();
+    /**
+     * Creates the configured endpoints and the shared store, replacing the current ones without
+     * stopping them.
+     */
+    private void openEndpoints(OsrsKillboardPanel panel)
+    {
+        HttpUrl apiBase = HttpUrl.parse(config.apiEndpoint());
+        if (apiBase == null)
+        {
+            log.warn("Invalid killboard endpoint {}, using {}", config.apiEndpoint(), DEFAULT_API_BASE);
+            apiBase = HttpUrl.parse(DEFAULT_API_BASE);
+        }
 
-        MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+        final Sender primarySender = new Sender(true);
+        primary = new OsrsKillboardEndpoint("killboard", apiBase, httpClient, PRIMARY_CONCURRENCY, PRIMARY_RETRIES,
+                circuitBreaker, metrics, primarySender);
 
-        String requestBody = killRecord.toString();
-        Request requestBuilder = new Request.Builder()
-                .post(RequestBody.create(JSON, requestBody))
-                .url(url)
-                .build();
+        final List<OsrsKillboardEndpoint> endpoints = new ArrayList<>();
+        final Sender secondarySender = new Sender(false);
+        for (String endpoint : Splitter.on(',').trimResults().omitEmptyStrings().split(config.additionalEndpoints()))
+        {
+            final HttpUrl url = HttpUrl.parse(endpoint);
+            if (url == null)
+            {
+                log.warn("Ignoring invalid endpoint {}", endpoint);
+                continue;
+            }
+
+            endpoints.add(new OsrsKillboardEndpoint(url.host(), url, httpClient, config.additionalEndpointConcurrency(),
+                    config.additionalEndpointRetries(), new OsrsKillboardCircuitBreaker(), new OsrsKillboardSubmissionMetrics(), secondarySender));
+        }
+        secondaries = endpoints;
 
-        httpClient.newCall(requestBuilder).enqueue(new Callback()
+        sharedStore = null;
+        sharedPoll = null;
+        if (config.shareBetweenClients())
         {
-            @Override
-            public void onFailure(Call call, IOException e)
+            try
+            {
+                final OsrsKillboardSharedStore store = new OsrsKillboardSharedStore(new File(dataDir, SHARED_LOG_FILE),
+                        new File(dataDir, SHARED_SENDER_FILE), SHARED_LOG_SIZE);
+                sharedStore = store;
+                sharedPoll = executor.scheduleWithFixedDelay(() -> pollSharedStore(store, panel), 0, SHARED_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            catch (IOException e)
             {
-                chatMessageManager.queue(QueuedMessage.builder().type(ChatMessageType.GAMEMESSAGE).value("OSRSKillboard.com - Kill of " + victimName + " failed to log.").build());
-                SwingUtilities.invokeLater(() -> panel.add(victimName, victimCombat, victimLoot, ""));
-                log.warn("PK submit failed: {}", e.getMessage(), e);
+                log.warn("Unable to open the shared store, submitting directly", e);
             }
+        }
+    }
 
-            @Override
-            public void onResponse(Call call, Response response) {
-                String killIdentifier = null;
-                try {
-                    assert response.body() != null;
-                    killIdentifier = response.body().string();
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                } finally {
-                    response.close();
-                }
-                chatMessageManager.queue(QueuedMessage.builder().type(ChatMessageType.GAMEMESSAGE).value("OSRSKillboard.com - Kill of " + victimName + " logged.").build());
+    private void resumePending(OsrsKillboardPanel panel)
+    {
+        // Already went to the additional endpoints, if it got that far
+        loadPending(panel).forEach(submission ->
+        {
+            if (!primary.offer(submission))
+            {
+                onSubmitFailed(submission, null);
+            }
+        });
+    }
 
-                String finalKillIdentifier = killIdentifier;
-                SwingUtilities.invokeLater(() -> {
-                    panel.add(victimName, victimCombat, victimLoot, finalKillIdentifier);
-                    future.complete(null);
+    /**
+     * Shows the results any client appended to the shared store and, if this client is the sender,
+     * queues the submissions no client has taken yet.
+     */
+    private void pollSharedStore(OsrsKillboardSharedStore store, OsrsKillboardPanel panel)
+    {
+        try
+        {
+            store.read(entry ->
+            {
+                final JsonObject json = parseSharedEntry(entry);
+                if (json.has(SHARED_KILL_ID))
+                {
+                    addToPanel(fromJson(json, panel, null), json.get(SHARED_KILL_ID).getAsString());
+                }
+            });
+            if (accepting && store.isSender())
+            {
+                final List<OsrsKillboardSharedStore.Entry> results = new ArrayList<>();
+                store.take(entry ->
+                {
+                    final JsonObject json = parseSharedEntry(entry.getData());
+                    if (json.has(SHARED_KILL_ID))
+                    {
+                        results.add(entry);
+                        return true;
+                    }
+                    return offer(fromJson(json, panel, entry));
                 });
+                // Results need no sending, completing them has to wait until take released the store
+                results.forEach(entry -> entry.complete(null));
             }
-        });
+        }
+        catch (RuntimeException e)
+        {
+            // Keep the task scheduled
+            log.warn("Unable to poll the shared store", e);
+        }
+    }
 
-        return future;
+    /**
+     * Completes a shared submission, appending its outcome to the shared store so every client shows it
+     * with its kill link. Shown here only if the store has been closed since.
+     */
+    private void publishResult(OsrsKillboardSubmission submission, String identifier)
+    {
+        final JsonObject result = toJson(submission);
+        result.addProperty(SHARED_KILL_ID, identifier);
+        if (submission.getSharedEntry().complete(result.toString().getBytes(StandardCharsets.UTF_8)))
+        {
+            submission.getFuture().complete(null);
+            return;
+        }
+
+        addToPanel(submission, identifier);
+    }
+
+    /**
+     * Stops taking new submissions and returns straight away. The queued ones get a bounded time to be
+     * sent on the lifecycle thread. Anything still unsent to the killboard after that, including a cancelled
+     * in-flight call, goes to the endpoints of a later start or is saved and sent again on the next one.
+     * Unsent submissions taken from the shared store stay there for the next sender, unsent submissions
+     * to additional endpoints are dropped.
+     */
+    synchronized void shutDown(long timeoutMillis)
+    {
+        accepting = false;
+        closeEndpoints(primary, secondaries, sharedStore, sharedPoll, timeoutMillis);
+        primary = null;
+        secondaries = List.of();
+        sharedStore = null;
+        sharedPoll = null;
+    }
+
+    /**
+     * Applies changed endpoint settings without blocking the caller. On the lifecycle thread the new
+     * endpoints take over at once, so nothing enqueued meanwhile is turned away, and what the old ones
+     * still held is handed over to them once they stopped.
+     */
+    void restart(OsrsKillboardPanel panel, long timeoutMillis)
+    {
+        lifecycle.execute(() -> replaceEndpoints(panel, timeoutMillis));
+    }
+
+    private synchronized void replaceEndpoints(OsrsKillboardPanel panel, long timeoutMillis)
+    {
+        // The plugin was stopped before the restart got to run, a later start read the settings itself
+        if (!accepting || panel != this.panel)
+        {
+            return;
+        }
+
+        final OsrsKillboardEndpoint oldPrimary = primary;
+        final List<OsrsKillboardEndpoint> oldSecondaries = secondaries;
+        final OsrsKillboardSharedStore oldStore = sharedStore;
+        final ScheduledFuture<?> oldPoll = sharedPoll;
+        openEndpoints(panel);
+        closeEndpoints(oldPrimary, oldSecondaries, oldStore, oldPoll, timeoutMillis);
+        resumePending(panel);
+    }
+
+    private void closeEndpoints(OsrsKillboardEndpoint oldPrimary, List<OsrsKillboardEndpoint> oldSecondaries,
+                                OsrsKillboardSharedStore store, ScheduledFuture<?> poll, long timeoutMillis)
+    {
+        if (poll != null)
+        {
+            poll.cancel(false);
+        }
+        lifecycle.execute(() -> drain(oldPrimary, oldSecondaries, store, timeoutMillis));
+    }
+
+    private void drain(OsrsKillboardEndpoint oldPrimary, List<OsrsKillboardEndpoint> oldSecondaries,
+                       OsrsKillboardSharedStore store, long timeoutMillis)
+    {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        final List<OsrsKillboardSubmission> unsent = oldPrimary == null ? List.of() : oldPrimary.shutDown(deadline);
+        for (OsrsKillboardEndpoint secondary : oldSecondaries)
+        {
+            final List<OsrsKillboardSubmission> dropped = secondary.shutDown(deadline);
+            log.debug("{}: {}, {} unsent dropped", secondary.getName(), secondary.getMetrics(), dropped.size());
+        }
+
+        // Another client takes over sending once the store is closed
+        if (store != null)
+        {
+            store.close();
+        }
+
+        handOver(unsent);
+    }
+
+    /**
+     * Queues submissions left by stopped endpoints on the current ones, saving them if there are none or
+     * they can't keep up. Submissions made for the panel of an earlier start are moved to the current one.
+     */
+    private synchronized void handOver(List<OsrsKillboardSubmission> unsent)
+    {
+        final OsrsKillboardEndpoint endpoint = primary;
+        final List<OsrsKillboardSubmission> rest = new ArrayList<>();
+        for (OsrsKillboardSubmission submission : unsent)
+        {
+            // Still in the shared store, whichever client sends next takes it again
+            if (submission.isShared())
+            {
+                continue;
+            }
+
+            if (endpoint == null)
+            {
+                rest.add(submission);
+                continue;
+            }
+
+            final OsrsKillboardSubmission current = submission.getPanel() == panel ? submission : fromJson(toJson(submission), panel, null);
+            if (!endpoint.offer(current))
+            {
+                rest.add(current);
+            }
+        }
+        savePending(rest, endpoint != null);
+    }
+
+    public CompletableFuture<Void> submitPk(JsonObject killRecord, JsonObject pkerProfile, OsrsKillboardPanel panel, String victimName, int victimCombat, OsrsKillboardItem[] victimLoot)
+    {
+        return enqueue(new OsrsKillboardSubmission("pks", killRecord, pkerProfile, "Kill of " + victimName, victimName, victimCombat, victimLoot, panel, null));
     }
 
     public CompletableFuture<Void> submitKeyLoot(JsonObject keyJson, OsrsKillboardPanel panel, OsrsKillboardItem[] keyLoot)
     {
-        CompletableFuture<Void> future = new CompletableFuture<>();
+        return enqueue(new OsrsKillboardSubmission("lootkeys", keyJson, null, "PvP Loot Chest opening", "PvP Loot Chest", -2, keyLoot, panel, null));
+    }
+
+    private CompletableFuture<Void> enqueue(OsrsKillboardSubmission submission)
+    {
+        // Sent by whichever client is the sender, every client shows the result it appends to the store
+        final OsrsKillboardSharedStore store = sharedStore;
+        if (accepting && store != null && store.append(toJson(submission).toString().getBytes(StandardCharsets.UTF_8)))
+        {
+            submission.getFuture().complete(null);
+            return submission.getFuture();
+        }
 
-        HttpUrl url = apiBase.newBuilder()
-                .addPathSegment("lootkeys")
-                .build();
+        if (!accepting || !offer(submission))
+        {
+            // Shutting down or can't keep up, keep the record locally rather than block the client thread
+            onSubmitFailed(submission, null);
+        }
+
+        return submission.getFuture();
+    }
+
+    /**
+     * Queues a submission on every endpoint.
+     *
+     * @return false if the killboard endpoint did not take it
+     */
+    private boolean offer(OsrsKillboardSubmission submission)
+    {
+        final OsrsKillboardEndpoint endpoint = primary;
+        if (endpoint == null || !endpoint.offer(submission))
+        {
+            return false;
+        }
+
+        for (OsrsKillboardEndpoint secondary : secondaries)
+        {
+            if (!secondary.offer(submission))
+            {
+                log.debug("{} dropped by {}, queue full", submission.getDescription(), secondary.getName());
+            }
+        }
+
+        return true;
+    }
+
+    private final class Sender implements OsrsKillboardEndpoint.Sender
+    {
+        private final boolean primary;
+
+        // Session pker profile on the killboard, registered once and again whenever the skills or gear change.
+        // Registration is skipped for a while after it failed, and for good if the server has no profiles.
+        private String profileId;
+        // Profile the id was registered for. Compared as JSON, which stops at the gear block the plugin caches
+        // per setup, so an unchanged profile is not serialized. A hash could collide and link kills to another profile.
+        private JsonObject registeredProfile;
+        private boolean profileFailed;
+        private long profileFailedAt;
+        private boolean profilesUnsupported;
+
+        private Sender(boolean primary)
+        {
+            this.primary = primary;
+        }
+
+        @Override
+        public void send(OsrsKillboardEndpoint endpoint, OsrsKillboardSubmission submission) throws IOException
+        {
+            if (primary)
+            {
+                sendToKillboard(endpoint, submission);
+                return;
+            }
+
+            try (Response response = endpoint.execute(buildRequest(endpoint, submission.getPath(), getFullBody(submission))))
+            {
+                if (!response.isSuccessful())
+                {
+                    throw new IOException("HTTP " + response.code());
+                }
+            }
+        }
+
+        @Override
+        public void onFailed(OsrsKillboardSubmission submission, IOException e)
+        {
+            if (primary)
+            {
+                onSubmitFailed(submission, e);
+            }
+            else
+            {
+                log.debug("{} could not be sent: {}", submission.getDescription(), e == null ? null : e.getMessage());
+            }
+        }
 
-        MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+        private void sendToKillboard(OsrsKillboardEndpoint endpoint, OsrsKillboardSubmission submission) throws IOException
+        {
+            final JsonObject pkerProfile = submission.getPkerProfile();
+            String usedProfileId = null;
+            if (pkerProfile != null)
+            {
+                usedProfileId = getProfileId(endpoint, pkerProfile);
+            }
+
+            final RequestBody body = usedProfileId != null
+                    ? buildBody(buildPayload(submission, usedProfileId))
+                    : getFullBody(submission);
+            String identifier = post(endpoint, submission.getPath(), body, usedProfileId != null);
+            if (identifier == null)
+            {
+                log.debug("Server does not recognize profile {}, sending full kill payload", usedProfileId);
+                profileId = null;
+                identifier = post(endpoint, submission.getPath(), getFullBody(submission), false);
+            }
+
+            // Shared submissions may come from another client, which learns about it through the store
+            if (submission.isShared())
+            {
+                log.debug("{} logged from the shared store", submission.getDescription());
+                publishResult(submission, identifier);
+                return;
+            }
+
+            chatMessageManager.queue(QueuedMessage.builder().type(ChatMessageType.GAMEMESSAGE).value("OSRSKillboard.com - " + submission.getDescription() + " logged.").build());
+            addToPanel(submission, identifier);
+        }
+
+        /**
+         * Returns the id of the registered profile, registering it first if it changed. Returns null when
+         * the profile could not be registered, in which case it is sent inline.
+         */
+        private String getProfileId(OsrsKillboardEndpoint endpoint, JsonObject pkerProfile)
+        {
+            if (profileId != null && pkerProfile.equals(registeredProfile))
+            {
+                return profileId;
+            }
+
+            if (profilesUnsupported || (profileFailed && System.nanoTime() - profileFailedAt < PROFILE_RETRY_NANOS))
+            {
+                return null;
+            }
+
+            // Don't spend a half-open probe on the profile, let the kill itself be the probe
+            if (endpoint.getCircuitBreaker().getState() != OsrsKillboardCircuitBreaker.State.CLOSED)
+            {
+                return null;
+            }
+
+            try (Response response = endpoint.execute(buildRequest(endpoint, "profiles", RequestBody.create(JSON, pkerProfile.toString()))))
+            {
+                final ResponseBody body = response.body();
+                if (response.isSuccessful() && body != null)
+                {
+                    final String id = body.string();
+                    if (!id.isEmpty())
+                    {
+                        registeredProfile = pkerProfile;
+                        profileId = id;
+                        profileFailed = false;
+                        return id;
+                    }
+                }
+
+                if (response.code() == PROFILES_UNSUPPORTED_CODE)
+                {
+                    log.debug("Server does not support pker profiles, sending full kill payloads");
+                    profilesUnsupported = true;
+                    return null;
+                }
+
+                log.debug("Profile registration failed with HTTP {}, sending full kill payload", response.code());
+            }
+            catch (IOException e)
+            {
+                log.debug("Profile registration failed, sending full kill payload: {}", e.getMessage());
+            }
 
-        String requestBody = keyJson.toString();
-        Request requestBuilder = new Request.Builder()
-                .post(RequestBody.create(JSON, requestBody))
+            profileFailed = true;
+            profileFailedAt = System.nanoTime();
+            return null;
+        }
+    }
+
+    static JsonObject buildPayload(OsrsKillboardSubmission submission, String profileId)
+    {
+        final JsonObject pkerProfile = submission.getPkerProfile();
+        if (pkerProfile == null)
+        {
+            return submission.getPayload();
+        }
+
+        final JsonObject payload = submission.getPayload().deepCopy();
+        if (profileId != null)
+        {
+            payload.addProperty("pkerProfileId", profileId);
+        }
+        else
+        {
+            pkerProfile.entrySet().forEach(e -> payload.add(e.getKey(), e.getValue()));
+        }
+        return payload;
+    }
+
+    /**
+     * The full payload with the pker profile inlined, serialized once for all endpoints.
+     */
+    private RequestBody getFullBody(OsrsKillboardSubmission submission)
+    {
+        return submission.getFullBody(() -> buildBody(buildPayload(submission, null)));
+    }
+
+    /**
+     * Posts a payload and returns the identifier the server assigned to it, or null if the payload
+     * referenced a profile the server doesn't know.
+     *
+     * @throws IOException if the server did not take the payload
+     */
+    private static String post(OsrsKillboardEndpoint endpoint, String path, RequestBody body, boolean usesProfile) throws IOException
+    {
+        try (Response response = endpoint.execute(buildRequest(endpoint, path, body)))
+        {
+            if (usesProfile && UNKNOWN_PROFILE_CODES.contains(response.code()))
+            {
+                return null;
+            }
+
+            // The body is an error page rather than a kill id
+            if (!response.isSuccessful())
+            {
+                throw new IOException("HTTP " + response.code());
+            }
+
+            final ResponseBody responseBody = response.body();
+            return responseBody == null ? "" : responseBody.string();
+        }
+    }
+
+    private static Request buildRequest(OsrsKillboardEndpoint endpoint, String path, RequestBody body)
+    {
+        HttpUrl url = endpoint.getBaseUrl().newBuilder()
+                .addPathSegment(path)
+                .build();
+
+        return new Request.Builder()
+                .post(body)
                 .url(url)
                 .build();
+    }
 
-        httpClient.newCall(requestBuilder).enqueue(new Callback()
+    private RequestBody buildBody(JsonObject payload)
+    {
+        if (config.binaryFormat())
         {
-            @Override
-            public void onFailure(Call call, IOException e)
+            return RequestBody.create(BINARY, OsrsKillboardBinaryCodec.encode(payload));
+        }
+
+        return RequestBody.create(JSON, payload.toString());
+    }
+
+    private void onSubmitFailed(OsrsKillboardSubmission submission, IOException e)
+    {
+        if (submission.isShared())
+        {
+            log.warn("{} from the shared store failed to log", submission.getDescription(), e);
+            publishResult(submission, "");
+            return;
+        }
+
+        chatMessageManager.queue(QueuedMessage.builder().type(ChatMessageType.GAMEMESSAGE).value("OSRSKillboard.com - " + submission.getDescription() + " failed to log.").build());
+        addToPanel(submission, "");
+        if (e != null)
+        {
+            log.warn("{} submit failed: {}", submission.getDescription(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Hands a finished submission over to the EDT. Updates are batched so a burst of results
+     * costs a single trip through the Swing event queue.
+     */
+    private void addToPanel(OsrsKillboardSubmission submission, String identifier)
+    {
+        final Runnable update = () ->
+        {
+            // A closed panel is never shown again, the result goes to the panel of a later start if there is one
+            final OsrsKillboardPanel target = submission.getPanel().isClosed() ? panel : submission.getPanel();
+            if (target != null && !target.isClosed())
             {
-                chatMessageManager.queue(QueuedMessage.builder().type(ChatMessageType.GAMEMESSAGE).value("OSRSKillboard.com - PvP Loot Chest opening failed to log.").build());
-                SwingUtilities.invokeLater(() -> panel.add("PvP Loot Chest", -2, keyLoot, ""));
-                log.warn("PvP Key Loot submit failed: {}", e.getMessage(), e);
+                target.add(submission.getTitle(), submission.getActorLevel(), submission.getLoot(), identifier);
             }
+            submission.getFuture().complete(null);
+        };
 
-            @Override
-            public void onResponse(Call call, Response response) {
-                String killIdentifier = null;
-                try {
-                    assert response.body() != null;
-                    killIdentifier = response.body().string();
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                } finally {
-                    response.close();
-                }
-                chatMessageManager.queue(QueuedMessage.builder().type(ChatMessageType.GAMEMESSAGE).value("OSRSKillboard.com - PvP Loot Chest opening logged.").build());
+        if (!panelUpdates.offer(update))
+        {
+            SwingUtilities.invokeLater(update);
+            return;
+        }
 
-                String serverKeyId = killIdentifier;
-                SwingUtilities.invokeLater(() -> {
-                    panel.add("PvP Loot Chest", -2, keyLoot, serverKeyId);
-                    future.complete(null);
-                });
+        if (panelDrainScheduled.compareAndSet(false, true))
+        {
+            final int batchWindow = config.resultBatchWindow();
+            if (batchWindow > 0)
+            {
+                executor.schedule(() -> SwingUtilities.invokeLater(this::drainPanelUpdates), batchWindow, TimeUnit.MILLISECONDS);
             }
-        });
+            else
+            {
+                SwingUtilities.invokeLater(this::drainPanelUpdates);
+            }
+        }
+    }
+
+    private void drainPanelUpdates()
+    {
+        final OsrsKillboardEvents.Callback event = new OsrsKillboardEvents.Callback();
+        event.begin();
+
+        panelDrainScheduled.set(false);
+        for (Runnable update = panelUpdates.poll(); update != null; update = panelUpdates.poll())
+        {
+            // Also run once shutdown started, until the plugin closes the panel
+            update.run();
+            event.updates++;
+        }
 
-        return future;
+        event.commit();
     }
 
-}
\ No newline at end of file
+    /**
+     * Saves submissions to be sent on the next start. Those of a running session, left over by a restart,
+     * are saved whether or not unsent kills are kept across stops.
+     */
+    private synchronized void savePending(List<OsrsKillboardSubmission> unsent, boolean running)
+    {
+        if (unsent.isEmpty())
+        {
+            return;
+        }
+
+        if (!running && !config.persistUnsent())
+        {
+            log.debug("Dropped {} unsent submissions", unsent.size());
+            return;
+        }
+
+        final File pendingFile = new File(dataDir, PENDING_FILE);
+        pendingFile.getParentFile().mkdirs();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(pendingFile, true), StandardCharsets.UTF_8))
+        {
+            for (OsrsKillboardSubmission submission : unsent)
+            {
+                writer.write(gson.toJson(toJson(submission)));
+                writer.write('\n');
+            }
+            log.debug("Saved {} unsent submissions", unsent.size());
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to save unsent submissions", e);
+        }
+    }
+
+    private synchronized List<OsrsKillboardSubmission> loadPending(OsrsKillboardPanel panel)
+    {
+        final List<OsrsKillboardSubmission> pending = new ArrayList<>();
+        final File pendingFile = new File(dataDir, PENDING_FILE);
+        if (!pendingFile.exists())
+        {
+            return pending;
+        }
+
+        try
+        {
+            for (String line : Files.readAllLines(pendingFile.toPath(), StandardCharsets.UTF_8))
+            {
+                if (!line.isEmpty())
+                {
+                    pending.add(fromJson(gson.fromJson(line, JsonObject.class), panel, null));
+                }
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            log.warn("Unable to load unsent submissions", e);
+        }
+
+        pendingFile.delete();
+        return pending;
+    }
+
+    private static JsonObject toJson(OsrsKillboardSubmission submission)
+    {
+        final JsonObject json = new JsonObject();
+        json.addProperty("path", submission.getPath());
+        json.add("payload", submission.getPayload());
+        if (submission.getPkerProfile() != null)
+        {
+            json.add("pkerProfile", submission.getPkerProfile());
+        }
+        json.addProperty("description", submission.getDescription());
+        json.addProperty("title", submission.getTitle());
+        json.addProperty("actorLevel", submission.getActorLevel());
+
+        final JsonArray loot = new JsonArray();
+        for (OsrsKillboardItem item : submission.getLoot())
+        {
+            final JsonObject itemJson = new JsonObject();
+            itemJson.addProperty("id", item.getId());
+            itemJson.addProperty("name", item.getName());
+            itemJson.addProperty("qty", item.getQuantity());
+            itemJson.addProperty("price", item.getGePrice());
+            loot.add(itemJson);
+        }
+        json.add("loot", loot);
+        return json;
+    }
+
+    private JsonObject parseSharedEntry(byte[] entry)
+    {
+        return gson.fromJson(new String(entry, StandardCharsets.UTF_8), JsonObject.class);
+    }
+
+    private static OsrsKillboardSubmission fromJson(JsonObject json, OsrsKillboardPanel panel,
+                                                    OsrsKillboardSharedStore.Entry sharedEntry)
+    {
+        final JsonArray loot = json.getAsJsonArray("loot");
+        final OsrsKillboardItem[] items = new OsrsKillboardItem[loot.size()];
+        for (int i = 0; i < items.length; i++)
+        {
+            final JsonObject item = loot.get(i).getAsJsonObject();
+            items[i] = new OsrsKillboardItem(item.get("id").getAsInt(), item.get("name").getAsString(),
+                    item.get("qty").getAsInt(), item.get("price").getAsLong());
+        }
+
+        return new OsrsKillboardSubmission(
+                json.get("path").getAsString(),
+                json.getAsJsonObject("payload"),
+                json.has("pkerProfile") ? json.getAsJsonObject("pkerProfile") : null,
+                json.get("description").getAsString(),
+                json.get("title").getAsString(),
+                json.get("actorLevel").getAsInt(),
+                items,
+                panel,
+                sharedEntry);
+    }
+}
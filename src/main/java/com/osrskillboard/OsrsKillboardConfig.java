@@ -2,8 +2,177 @@ package com.osrskillboard;
 
 import net.runelite.client.config.Config;
 import net.runelite.client.config.ConfigGroup;
+import net.runelite.client.config.ConfigItem;
+import net.runelite.client.config.ConfigSection;
+import net.runelite.client.config.Range;
+import net.runelite.client.config.Units;
 
-@ConfigGroup("osrskillboard")
+@ConfigGroup(OsrsKillboardConfig.GROUP)
 public interface OsrsKillboardConfig extends Config
 {
+	String GROUP = "osrskillboard";
+
+	@ConfigSection(
+		name = "Performance",
+		description = "Limits and timings, applied as soon as they are changed",
+		position = 100,
+		closedByDefault = true
+	)
+	String performanceSection = "performance";
+
+	@ConfigItem(
+		keyName = "binaryFormat",
+		name = "Compact submissions",
+		description = "Send kills in a compact binary format instead of JSON",
+		position = 0
+	)
+	default boolean binaryFormat()
+	{
+		return false;
+	}
+
+	@ConfigItem(
+		keyName = "repriceLoot",
+		name = "Refresh loot values",
+		description = "Re-price logged loot in the background whenever GE prices refresh",
+		position = 1
+	)
+	default boolean repriceLoot()
+	{
+		return false;
+	}
+
+	@ConfigItem(
+		keyName = "apiEndpoint",
+		name = "Killboard endpoint",
+		description = "Address kills are logged to",
+		position = 2
+	)
+	default String apiEndpoint()
+	{
+		return OsrsKillboardClient.DEFAULT_API_BASE;
+	}
+
+	@ConfigItem(
+		keyName = "additionalEndpoints",
+		name = "Additional endpoints",
+		description = "Comma separated addresses that also receive every kill, for example a clan tracker",
+		position = 3
+	)
+	default String additionalEndpoints()
+	{
+		return "";
+	}
+
+	@Range(
+		min = 1,
+		max = 8
+	)
+	@ConfigItem(
+		keyName = "additionalEndpointConcurrency",
+		name = "Additional endpoint requests",
+		description = "How many kills are sent at once to each additional endpoint",
+		position = 101,
+		section = performanceSection
+	)
+	default int additionalEndpointConcurrency()
+	{
+		return 2;
+	}
+
+	@Range(
+		max = 10
+	)
+	@ConfigItem(
+		keyName = "additionalEndpointRetries",
+		name = "Additional endpoint retries",
+		description = "How many times a failed kill is retried on an additional endpoint",
+		position = 102,
+		section = performanceSection
+	)
+	default int additionalEndpointRetries()
+	{
+		return 3;
+	}
+
+	@ConfigItem(
+		keyName = "syncHistory",
+		name = "Load past kills",
+		description = "Show the kills OSRSKillboard.com already has for this account in the panel",
+		position = 5
+	)
+	default boolean syncHistory()
+	{
+		return true;
+	}
+
+	@ConfigItem(
+		keyName = "shareBetweenClients",
+		name = "Share between clients",
+		description = "Combine the history of all clients on this computer and send their kills through one of them. Shared kills are not announced in chat",
+		position = 4
+	)
+	default boolean shareBetweenClients()
+	{
+		return false;
+	}
+
+	@Range(
+		min = 10,
+		max = OsrsKillboardPanel.MAX_RECORDS_IN_MEMORY
+	)
+	@ConfigItem(
+		keyName = "lootBoxLimit",
+		name = "Loot boxes shown",
+		description = "How many loot boxes the panel shows, older ones are kept in the totals",
+		position = 103,
+		section = performanceSection
+	)
+	default int lootBoxLimit()
+	{
+		return 500;
+	}
+
+	@Range(
+		max = 4096
+	)
+	@ConfigItem(
+		keyName = "iconCacheSize",
+		name = "Item icon cache",
+		description = "How many item icons the panel keeps for reuse between loot boxes, 0 to disable",
+		position = 104,
+		section = performanceSection
+	)
+	default int iconCacheSize()
+	{
+		return 256;
+	}
+
+	@Range(
+		max = 2000
+	)
+	@Units(Units.MILLISECONDS)
+	@ConfigItem(
+		keyName = "resultBatchWindow",
+		name = "Result batch window",
+		description = "How long finished submissions are collected before the panel is updated with them at once",
+		position = 105,
+		section = performanceSection
+	)
+	default int resultBatchWindow()
+	{
+		return 0;
+	}
+
+	@ConfigItem(
+		keyName = "persistUnsent",
+		name = "Keep unsent kills",
+		description = "Save kills that could not be sent before the plugin stopped and send them on the next start",
+		position = 106,
+		section = performanceSection
+	)
+	default boolean persistUnsent()
+	{
+		return true;
+	}
 }
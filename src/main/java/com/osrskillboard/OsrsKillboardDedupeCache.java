@@ -0,0 +1,95 @@
+package com.osrskillboard;
+
+import net.runelite.client.game.ItemStack;
+
+import java.util.Collection;
+
+/**
+ * Remembers recently submitted kills for a short time so the same kill is not sent twice, for example when
+ * a loot event is repeated or a loot chest is seen through both its widget and its containers.
+ *
+ * Entries are 64 bit hashes in a small open addressed table with a fixed probe length, so memory use is
+ * constant and lookups are O(1). When the probe window is full the entry closest to expiring is replaced.
+ */
+class OsrsKillboardDedupeCache
+{
+    static final int CAPACITY = 64;
+    private static final int MASK = CAPACITY - 1;
+    static final int PROBE_LENGTH = 4;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long[] keys = new long[CAPACITY];
+    private final long[] expiresAt = new long[CAPACITY];
+    private final long ttlMillis;
+
+    OsrsKillboardDedupeCache(final long ttlMillis)
+    {
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Hashes what identifies a kill: who it was, where and when, and what it dropped.
+     */
+    static long hash(final String victimName, final int world, final int tick, final Collection<ItemStack> items)
+    {
+        long hash = FNV_OFFSET;
+        if (victimName != null)
+        {
+            for (int i = 0; i < victimName.length(); i++)
+            {
+                hash = (hash ^ victimName.charAt(i)) * FNV_PRIME;
+            }
+        }
+        hash = (hash ^ world) * FNV_PRIME;
+        hash = (hash ^ tick) * FNV_PRIME;
+
+        // Order independent, the same loot may be reported in a different order
+        long loot = 0;
+        for (ItemStack item : items)
+        {
+            loot += mix(((long) item.getId() << 32) | (item.getQuantity() & 0xFFFFFFFFL));
+        }
+        hash = (hash ^ loot) * FNV_PRIME;
+
+        // 0 marks an empty slot
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Records the key and tells whether it was already seen within the time to live.
+     *
+     * @return true if this is a duplicate that should be suppressed
+     */
+    boolean checkAndAdd(final long key, final long now)
+    {
+        final int start = (int) mix(key) & MASK;
+        int victim = start;
+        for (int i = 0; i < PROBE_LENGTH; i++)
+        {
+            final int slot = (start + i) & MASK;
+            if (keys[slot] == key && expiresAt[slot] > now)
+            {
+                return true;
+            }
+
+            if (expiresAt[slot] < expiresAt[victim])
+            {
+                victim = slot;
+            }
+        }
+
+        keys[victim] = key;
+        expiresAt[victim] = now + ttlMillis;
+        return false;
+    }
+
+    static long mix(long value)
+    {
+        // SplitMix64 finalizer
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
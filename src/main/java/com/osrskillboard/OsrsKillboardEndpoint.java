@@ -0,0 +1,373 @@
+package com.osrskillboard;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One destination for submissions, with its own queue, concurrency limit, retry policy, circuit breaker
+ * and metrics, so a slow endpoint never holds up another one.
+ *
+ * Submissions are offered from any thread into a lock-free queue. A single dispatcher thread takes them
+ * off and hands each to a worker once a concurrency permit is free.
+ */
+@Slf4j
+class OsrsKillboardEndpoint
+{
+    interface Sender
+    {
+        /**
+         * Sends a submission through {@link #execute(Request)}, throwing to have it retried.
+         */
+        void send(OsrsKillboardEndpoint endpoint, OsrsKillboardSubmission submission) throws IOException;
+
+        /**
+         * Called when a submission failed for good.
+         */
+        void onFailed(OsrsKillboardSubmission submission, IOException e);
+    }
+
+    private static final int QUEUE_CAPACITY = 64;
+    private static final long DRAIN_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long STOP_WAIT_MILLIS = 500;
+    private static final long RETRY_BACKOFF_MILLIS = 1_000;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final String name;
+    @Getter(AccessLevel.PACKAGE)
+    private final HttpUrl baseUrl;
+    @Getter(AccessLevel.PACKAGE)
+    private final OsrsKillboardCircuitBreaker circuitBreaker;
+    @Getter(AccessLevel.PACKAGE)
+    private final OsrsKillboardSubmissionMetrics metrics;
+
+    private final OkHttpClient httpClient;
+    private final int maxRetries;
+    private final Sender sender;
+
+    private final OsrsKillboardSubmissionQueue<OsrsKillboardSubmission> queue = new OsrsKillboardSubmissionQueue<>(QUEUE_CAPACITY);
+    private final Semaphore permits;
+    private final ExecutorService workers;
+    private final Thread dispatcher;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Set<Call> calls = ConcurrentHashMap.newKeySet();
+    private final List<OsrsKillboardSubmission> cancelled = new ArrayList<>();
+    // Set once shutDown returned the cancelled submissions, later ones are failed instead
+    private boolean cancelledCollected;
+
+    private volatile boolean running = true;
+    private volatile boolean accepting = true;
+
+    OsrsKillboardEndpoint(String name, HttpUrl baseUrl, OkHttpClient httpClient, int concurrency, int maxRetries,
+                          OsrsKillboardCircuitBreaker circuitBreaker, OsrsKillboardSubmissionMetrics metrics, Sender sender)
+    {
+        this.name = name;
+        this.baseUrl = baseUrl;
+        this.httpClient = httpClient;
+        this.maxRetries = maxRetries;
+        this.circuitBreaker = circuitBreaker;
+        this.metrics = metrics;
+        this.sender = sender;
+        this.permits = new Semaphore(concurrency);
+
+        final AtomicInteger workerCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(concurrency, r ->
+        {
+            final Thread thread = new Thread(r, "OsrsKillboard " + name + " worker " + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.dispatcher = new Thread(this::dispatch, "OsrsKillboard " + name + " dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Queues a submission, safe to call from any thread.
+     *
+     * @return false if the endpoint is shutting down or can't keep up
+     */
+    boolean offer(OsrsKillboardSubmission submission)
+    {
+        if (!accepting || !queue.offer(submission))
+        {
+            metrics.onRejected();
+            return false;
+        }
+
+        metrics.onEnqueued(queue.size());
+        LockSupport.unpark(dispatcher);
+        return true;
+    }
+
+    private void dispatch()
+    {
+        while (running)
+        {
+            final OsrsKillboardSubmission submission = queue.poll();
+            if (submission == null)
+            {
+                // Woken by offer(), or by the interrupt of shutDown, the loop checks both again
+                LockSupport.park(this);
+                continue;
+            }
+
+            metrics.onDequeued(System.nanoTime() - submission.getEnqueuedAt());
+            inFlight.incrementAndGet();
+            try
+            {
+                permits.acquire();
+            }
+            catch (InterruptedException e)
+            {
+                // Only interrupted by shutdown, which collects what is left
+                inFlight.decrementAndGet();
+                addCancelled(submission);
+                break;
+            }
+
+            try
+            {
+                workers.execute(new Delivery(submission));
+            }
+            catch (RejectedExecutionException e)
+            {
+                // Workers were shut down between taking the permit and handing the submission over
+                permits.release();
+                inFlight.decrementAndGet();
+                addCancelled(submission);
+                break;
+            }
+        }
+
+        // Still the queue's only consumer, so it hands over what shutdown left in it
+        for (OsrsKillboardSubmission submission = queue.poll(); submission != null; submission = queue.poll())
+        {
+            addCancelled(submission);
+        }
+    }
+
+    private void sendWithRetries(OsrsKillboardSubmission submission)
+    {
+        for (int attempt = 0; ; attempt++)
+        {
+            try
+            {
+                sender.send(this, submission);
+                metrics.onSent();
+                return;
+            }
+            catch (IOException e)
+            {
+                if (!running)
+                {
+                    addCancelled(submission);
+                    return;
+                }
+
+                if (attempt >= maxRetries || circuitBreaker.getState() != OsrsKillboardCircuitBreaker.State.CLOSED)
+                {
+                    metrics.onFailed();
+                    sender.onFailed(submission, e);
+                    return;
+                }
+
+                log.debug("{} submit to {} failed, retry {} of {}: {}", submission.getDescription(), name, attempt + 1, maxRetries, e.getMessage());
+                try
+                {
+                    Thread.sleep(RETRY_BACKOFF_MILLIS << attempt);
+                }
+                catch (InterruptedException ie)
+                {
+                    addCancelled(submission);
+                    return;
+                }
+            }
+            catch (RuntimeException e)
+            {
+                log.warn("Unexpected error sending {} to {}", submission.getDescription(), name, e);
+                metrics.onFailed();
+                sender.onFailed(submission, null);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sends a request through the circuit breaker. While the breaker is open this fails straight away
+     * so the caller's local handling kicks in without touching the network.
+     */
+    Response execute(Request request) throws IOException
+    {
+        if (!circuitBreaker.tryAcquire())
+        {
+            throw new IOException("Circuit for " + name + " is open");
+        }
+
+        final OsrsKillboardEvents.Submit event = new OsrsKillboardEvents.Submit();
+        event.begin();
+        final long start = System.nanoTime();
+        Call call = null;
+        final Response response;
+        try
+        {
+            call = httpClient.newCall(request);
+            calls.add(call);
+            response = call.execute();
+            event.statusCode = response.code();
+        }
+        catch (IOException e)
+        {
+            // A call cancelled by shutdown says nothing about the endpoint
+            if (call.isCanceled())
+            {
+                circuitBreaker.cancelProbe();
+            }
+            else
+            {
+                circuitBreaker.onFailure();
+            }
+            throw e;
+        }
+        catch (RuntimeException e)
+        {
+            circuitBreaker.cancelProbe();
+            throw e;
+        }
+        finally
+        {
+            if (call != null)
+            {
+                calls.remove(call);
+            }
+            if (event.shouldCommit())
+            {
+                event.endpoint = name;
+                event.path = request.url().encodedPath();
+                event.payloadBytes = request.body() == null ? 0 : request.body().contentLength();
+                event.commit();
+            }
+        }
+
+        if (response.code() >= 500)
+        {
+            circuitBreaker.onFailure();
+        }
+        else
+        {
+            circuitBreaker.onSuccess(System.nanoTime() - start);
+        }
+        return response;
+    }
+
+    /**
+     * Stops taking submissions and waits until the deadline for the queued ones to be sent. Whatever is
+     * still unsent then is cancelled and returned. Should the dispatcher or a worker not stop in time,
+     * what they still hold is failed through the {@link Sender} once they do, rather than dropped.
+     */
+    List<OsrsKillboardSubmission> shutDown(long deadlineNanos)
+    {
+        accepting = false;
+        while ((!queue.isEmpty() || inFlight.get() > 0) && System.nanoTime() < deadlineNanos)
+        {
+            LockSupport.parkNanos(DRAIN_POLL_NANOS);
+        }
+
+        running = false;
+        calls.forEach(Call::cancel);
+        for (Runnable notStarted : workers.shutdownNow())
+        {
+            addCancelled(((Delivery) notStarted).submission);
+        }
+        dispatcher.interrupt();
+
+        try
+        {
+            dispatcher.join(STOP_WAIT_MILLIS);
+            workers.awaitTermination(STOP_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        final List<OsrsKillboardSubmission> unsent;
+        synchronized (cancelled)
+        {
+            unsent = new ArrayList<>(cancelled);
+            cancelled.clear();
+            cancelledCollected = true;
+        }
+
+        if (dispatcher.isAlive())
+        {
+            log.warn("{} dispatcher did not stop in time, its {} queued submissions fail once it does", name, queue.size());
+            return unsent;
+        }
+
+        // Offered between the dispatcher's last poll and the end of accepting, the queue has no consumer left
+        for (OsrsKillboardSubmission submission = queue.poll(); submission != null; submission = queue.poll())
+        {
+            unsent.add(submission);
+        }
+        return unsent;
+    }
+
+    private void addCancelled(OsrsKillboardSubmission submission)
+    {
+        synchronized (cancelled)
+        {
+            if (!cancelledCollected)
+            {
+                cancelled.add(submission);
+                return;
+            }
+        }
+
+        metrics.onFailed();
+        sender.onFailed(submission, null);
+    }
+
+    private final class Delivery implements Runnable
+    {
+        private final OsrsKillboardSubmission submission;
+
+        private Delivery(OsrsKillboardSubmission submission)
+        {
+            this.submission = submission;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                sendWithRetries(submission);
+            }
+            finally
+            {
+                permits.release();
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.osrskillboard;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder events of the plugin, so a recording of a session shows how much client thread,
+ * EDT and network time goes to it. Duration and thread are recorded by every event. When no
+ * recording is running, creating and committing them costs next to nothing.
+ */
+final class OsrsKillboardEvents
+{
+    private static final String CATEGORY = "OSRSKillboard";
+
+    private OsrsKillboardEvents()
+    {
+    }
+
+    @Name("com.osrskillboard.Capture")
+    @Label("Capture")
+    @Description("Handling of a loot event on the client thread")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class Capture extends Event
+    {
+        @Label("Handler")
+        String handler;
+
+        @Label("Item Count")
+        int itemCount;
+
+        @Label("Submitted")
+        boolean submitted;
+    }
+
+    @Name("com.osrskillboard.Serialize")
+    @Label("Serialize")
+    @Description("Building the JSON payload of a kill or loot key opening")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class Serialize extends Event
+    {
+        @Label("Payload")
+        String payload;
+
+        @Label("Item Count")
+        int itemCount;
+    }
+
+    @Name("com.osrskillboard.Submit")
+    @Label("Submit")
+    @Description("An HTTP call to an endpoint")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class Submit extends Event
+    {
+        @Label("Endpoint")
+        String endpoint;
+
+        @Label("Path")
+        String path;
+
+        @Label("Payload Size")
+        @DataAmount
+        long payloadBytes;
+
+        @Label("Status Code")
+        int statusCode;
+    }
+
+    @Name("com.osrskillboard.Callback")
+    @Label("Callback")
+    @Description("Handing finished submissions over to the panel on the EDT")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class Callback extends Event
+    {
+        @Label("Updates")
+        int updates;
+    }
+
+    @Name("com.osrskillboard.Panel")
+    @Label("Panel")
+    @Description("Panel work on the EDT")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class Panel extends Event
+    {
+        @Label("Operation")
+        String operation;
+
+        @Label("Record Count")
+        int recordCount;
+    }
+}
@@ -0,0 +1,84 @@
+package com.osrskillboard;
+
+import com.google.gson.JsonObject;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the resolved equipment block of recently seen gear setups, keyed by their equipment ids, so
+ * kills in the same gear skip the item lookups and JSON building. Mostly hit by the pker's own gear.
+ *
+ * Entries expire so the prices in them follow the GE price refreshes. The returned blocks are shared
+ * between payloads and must not be modified.
+ */
+class OsrsKillboardGearCache
+{
+    private static final int CAPACITY = 16;
+    private static final int MASK = CAPACITY - 1;
+    private static final int PROBE_LENGTH = 4;
+
+    private final int[][] keys = new int[CAPACITY][];
+    private final JsonObject[] gear = new JsonObject[CAPACITY];
+    private final long[] expiresAt = new long[CAPACITY];
+    private final long ttlMillis;
+
+    OsrsKillboardGearCache(final long ttlMillis)
+    {
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * @return the cached equipment block, or null if this gear hasn't been seen within the time to live
+     */
+    JsonObject get(final int[] equipmentIds, final long now)
+    {
+        final int start = slot(equipmentIds);
+        for (int i = 0; i < PROBE_LENGTH; i++)
+        {
+            final int slot = (start + i) & MASK;
+            if (expiresAt[slot] > now && Arrays.equals(keys[slot], equipmentIds))
+            {
+                return gear[slot];
+            }
+        }
+
+        return null;
+    }
+
+    void put(final int[] equipmentIds, final JsonObject equipment, final long now)
+    {
+        final int start = slot(equipmentIds);
+        int victim = start;
+        for (int i = 0; i < PROBE_LENGTH; i++)
+        {
+            final int slot = (start + i) & MASK;
+            if (Arrays.equals(keys[slot], equipmentIds))
+            {
+                victim = slot;
+                break;
+            }
+
+            if (expiresAt[slot] < expiresAt[victim])
+            {
+                victim = slot;
+            }
+        }
+
+        keys[victim] = equipmentIds.clone();
+        gear[victim] = equipment;
+        expiresAt[victim] = now + ttlMillis;
+    }
+
+    void clear()
+    {
+        Arrays.fill(keys, null);
+        Arrays.fill(gear, null);
+        Arrays.fill(expiresAt, 0);
+    }
+
+    private static int slot(final int[] equipmentIds)
+    {
+        final int hash = Arrays.hashCode(equipmentIds) * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & MASK;
+    }
+}
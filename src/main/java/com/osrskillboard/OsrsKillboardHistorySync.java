@@ -0,0 +1,272 @@
+package com.osrskillboard;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.RuneLite;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Loads the player's past kills from OSRSKillboard.com into the panel.
+ *
+ * Kills are fetched page by page from a cursor and kept in a local cache, so later sessions only ask
+ * for what came after the cached cursor. That request is conditional on the Last-Modified of the
+ * previous sync, so when nothing is new the server answers 304 without a body. Runs on its own low
+ * priority thread.
+ */
+@Slf4j
+class OsrsKillboardHistorySync
+{
+    private static final File CACHE_DIR = new File(new File(RuneLite.RUNELITE_DIR, "osrskillboard"), "history");
+    // Bounds a single sync, the rest is picked up by the next one
+    private static final int MAX_PAGES = 20;
+    private static final int NOT_MODIFIED = 304;
+
+    private final OkHttpClient httpClient;
+    private final Gson gson;
+    private final File cacheDir;
+    private final ThreadPoolExecutor executor;
+    private Future<?> task;
+
+    @Inject
+    private OsrsKillboardHistorySync(OkHttpClient httpClient, Gson gson)
+    {
+        this(httpClient, gson, CACHE_DIR);
+    }
+
+    OsrsKillboardHistorySync(OkHttpClient httpClient, Gson gson, File cacheDir)
+    {
+        this.httpClient = httpClient;
+        this.gson = gson;
+        this.cacheDir = cacheDir;
+        this.executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r ->
+        {
+            final Thread thread = new Thread(r, "OsrsKillboard history sync");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Passes the cached kills of the player and then the newly fetched ones to the consumer, on the sync
+     * thread. Only kills made before the given time are passed, later ones are already in the panel.
+     */
+    synchronized void sync(HttpUrl apiBase, String playerName, long before, Consumer<List<OsrsKillboardRecord>> consumer)
+    {
+        cancel();
+        task = executor.submit(() -> run(apiBase, playerName, before, consumer));
+    }
+
+    synchronized void cancel()
+    {
+        if (task != null)
+        {
+            task.cancel(true);
+            task = null;
+        }
+    }
+
+    private void run(HttpUrl apiBase, String playerName, long before, Consumer<List<OsrsKillboardRecord>> consumer)
+    {
+        final File cacheFile = new File(cacheDir, playerName.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_-]", "_") + ".json");
+        final JsonObject cache = loadCache(cacheFile);
+        final JsonArray cachedKills = cache.getAsJsonArray("kills");
+        consumer.accept(toRecords(cachedKills, before));
+
+        final JsonArray fetched = new JsonArray();
+        try
+        {
+            for (int page = 0; page < MAX_PAGES && !Thread.currentThread().isInterrupted(); page++)
+            {
+                if (!fetchPage(apiBase, playerName, cache, page == 0, fetched))
+                {
+                    break;
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            log.debug("History sync for {} stopped: {}", playerName, e.getMessage());
+        }
+
+        if (fetched.size() == 0)
+        {
+            return;
+        }
+
+        cachedKills.addAll(fetched);
+        saveCache(cacheFile, cache);
+        consumer.accept(toRecords(fetched, before));
+        log.debug("Synced {} kills of {}", fetched.size(), playerName);
+    }
+
+    /**
+     * Fetches the page after the cached cursor and moves the cursor past it.
+     *
+     * @return true if the server has more pages
+     */
+    private boolean fetchPage(HttpUrl apiBase, String playerName, JsonObject cache, boolean conditional, JsonArray fetched) throws IOException
+    {
+        final HttpUrl.Builder url = apiBase.newBuilder()
+                .addPathSegment("players")
+                .addPathSegment(playerName)
+                .addPathSegment("pks");
+        if (cache.has("cursor"))
+        {
+            url.addQueryParameter("after", cache.get("cursor").getAsString());
+        }
+
+        final Request.Builder request = new Request.Builder().get().url(url.build());
+        // No If-None-Match: an ETag is only valid for the URL it came with, and the cursor has moved on
+        // since. Last-Modified is a point in time of the player's kills, which holds for any cursor.
+        if (conditional && cache.has("lastModified"))
+        {
+            request.header("If-Modified-Since", cache.get("lastModified").getAsString());
+        }
+
+        try (Response response = httpClient.newCall(request.build()).execute())
+        {
+            if (response.code() == NOT_MODIFIED)
+            {
+                return false;
+            }
+
+            final ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null)
+            {
+                throw new IOException("HTTP " + response.code());
+            }
+
+            final JsonObject page = gson.fromJson(body.charStream(), JsonObject.class);
+            final JsonArray kills = page.getAsJsonArray("kills");
+            if (kills != null)
+            {
+                fetched.addAll(kills);
+            }
+
+            if (page.has("cursor") && !page.get("cursor").isJsonNull())
+            {
+                cache.addProperty("cursor", page.get("cursor").getAsString());
+            }
+
+            setOrRemove(cache, "lastModified", response.header("Last-Modified"));
+
+            return page.has("hasMore") && page.get("hasMore").getAsBoolean();
+        }
+    }
+
+    private static List<OsrsKillboardRecord> toRecords(JsonArray kills, long before)
+    {
+        final List<OsrsKillboardRecord> records = new ArrayList<>(kills.size());
+        for (JsonElement element : kills)
+        {
+            try
+            {
+                final JsonObject kill = element.getAsJsonObject();
+                final long time = Instant.parse(kill.get("time").getAsString()).toEpochMilli();
+                if (time >= before)
+                {
+                    continue;
+                }
+
+                final JsonArray loot = kill.getAsJsonArray("loot");
+                final OsrsKillboardItem[] items = new OsrsKillboardItem[loot.size()];
+                for (int i = 0; i < items.length; i++)
+                {
+                    final JsonObject item = loot.get(i).getAsJsonObject();
+                    items[i] = new OsrsKillboardItem(item.get("id").getAsInt(), item.get("name").getAsString(),
+                            item.get("qty").getAsInt(), item.get("price").getAsLong());
+                }
+
+                final int level = kill.get("victimCombatLevel").getAsInt();
+                records.add(new OsrsKillboardRecord(kill.get("victimName").getAsString(), "(lvl-" + level + ")",
+                        items, time, kill.get("id").getAsString(), 0));
+            }
+            catch (RuntimeException e)
+            {
+                // DateTimeParseException, or a kill missing fields
+                log.debug("Skipping malformed synced kill {}", element, e);
+            }
+        }
+        return records;
+    }
+
+    private JsonObject loadCache(File cacheFile)
+    {
+        if (cacheFile.exists())
+        {
+            try (Reader reader = Files.newBufferedReader(cacheFile.toPath(), StandardCharsets.UTF_8))
+            {
+                final JsonObject cache = gson.fromJson(reader, JsonObject.class);
+                if (cache != null && cache.has("kills"))
+                {
+                    return cache;
+                }
+            }
+            catch (IOException | RuntimeException e)
+            {
+                log.warn("Unable to load history cache {}, syncing from the start", cacheFile, e);
+            }
+        }
+
+        final JsonObject cache = new JsonObject();
+        cache.add("kills", new JsonArray());
+        return cache;
+    }
+
+    private void saveCache(File cacheFile, JsonObject cache)
+    {
+        cacheDir.mkdirs();
+        final File tmp = new File(cacheDir, cacheFile.getName() + ".tmp");
+        try
+        {
+            try (Writer writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8))
+            {
+                gson.toJson(cache, writer);
+            }
+            Files.move(tmp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to save history cache {}", cacheFile, e);
+        }
+    }
+
+    private static void setOrRemove(JsonObject json, String key, String value)
+    {
+        if (value == null)
+        {
+            json.remove(key);
+        }
+        else
+        {
+            json.addProperty(key, value);
+        }
+    }
+}
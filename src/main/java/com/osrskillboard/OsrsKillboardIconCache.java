@@ -0,0 +1,52 @@
+package com.osrskillboard;
+
+import net.runelite.client.game.ItemManager;
+import net.runelite.client.util.AsyncBufferedImage;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Item icons shared by the loot boxes, so rebuilding a box or showing the same stack in another box
+ * doesn't ask the item manager for a new image. Least recently used icons are dropped first.
+ * Only used on the EDT.
+ */
+class OsrsKillboardIconCache
+{
+    private final ItemManager itemManager;
+    private final Map<Long, AsyncBufferedImage> icons = new LinkedHashMap<>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, AsyncBufferedImage> eldest)
+        {
+            return size() > maxSize;
+        }
+    };
+    private int maxSize;
+
+    OsrsKillboardIconCache(final ItemManager itemManager, final int maxSize)
+    {
+        this.itemManager = itemManager;
+        this.maxSize = maxSize;
+    }
+
+    AsyncBufferedImage getImage(final int itemId, final int quantity, final boolean stackable)
+    {
+        if (maxSize == 0)
+        {
+            return itemManager.getImage(itemId, quantity, stackable);
+        }
+
+        final long key = ((long) itemId << 33) | ((quantity & 0xFFFFFFFFL) << 1) | (stackable ? 1 : 0);
+        return icons.computeIfAbsent(key, k -> itemManager.getImage(itemId, quantity, stackable));
+    }
+
+    void setMaxSize(final int maxSize)
+    {
+        this.maxSize = maxSize;
+        if (icons.size() > maxSize)
+        {
+            icons.keySet().removeIf(k -> icons.size() > this.maxSize);
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package com.osrskillboard;
 
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 
 @AllArgsConstructor
+@EqualsAndHashCode
 @Getter
 class OsrsKillboardItem
 {
@@ -0,0 +1,92 @@
+package com.osrskillboard;
+
+import net.runelite.api.ItemComposition;
+import net.runelite.client.game.ItemManager;
+
+import java.util.Arrays;
+
+/**
+ * Resolves item names and GE prices for everything a loot event touches in one pass, so an item that
+ * shows up in several loot key tabs or in both players' gear is only looked up once.
+ */
+class OsrsKillboardItemEnricher
+{
+    private final ItemManager itemManager;
+
+    OsrsKillboardItemEnricher(final ItemManager itemManager)
+    {
+        this.itemManager = itemManager;
+    }
+
+    /**
+     * Resolves the first count ids, each distinct id once. Must be called on the client thread.
+     */
+    Prices resolve(final int[] itemIds, final int count)
+    {
+        final int[] ids = Arrays.copyOf(itemIds, count);
+        Arrays.sort(ids);
+
+        int distinct = 0;
+        for (int i = 0; i < count; i++)
+        {
+            if (distinct == 0 || ids[distinct - 1] != ids[i])
+            {
+                ids[distinct++] = ids[i];
+            }
+        }
+
+        final String[] names = new String[distinct];
+        final long[] unitPrices = new long[distinct];
+        for (int i = 0; i < distinct; i++)
+        {
+            final ItemComposition itemComposition = itemManager.getItemComposition(ids[i]);
+            names[i] = itemComposition.getName();
+            unitPrices[i] = getUnitPrice(itemComposition, ids[i]);
+        }
+
+        return new Prices(Arrays.copyOf(ids, distinct), names, unitPrices);
+    }
+
+    /**
+     * Returns the GE price of one item, noted items are priced as their unnoted counterpart. Must be
+     * called on the client thread.
+     */
+    long getUnitPrice(final int itemId)
+    {
+        return getUnitPrice(itemManager.getItemComposition(itemId), itemId);
+    }
+
+    private long getUnitPrice(final ItemComposition itemComposition, final int itemId)
+    {
+        final int realItemId = itemComposition.getNote() != -1 ? itemComposition.getLinkedNoteId() : itemId;
+        return itemManager.getItemPrice(realItemId);
+    }
+
+    /**
+     * Names and unit prices of a resolved batch, sorted by item id.
+     */
+    static final class Prices
+    {
+        private final int[] ids;
+        private final String[] names;
+        private final long[] unitPrices;
+
+        private Prices(final int[] ids, final String[] names, final long[] unitPrices)
+        {
+            this.ids = ids;
+            this.names = names;
+            this.unitPrices = unitPrices;
+        }
+
+        OsrsKillboardItem item(final int itemId, final int quantity)
+        {
+            final int i = Arrays.binarySearch(ids, itemId);
+            if (i < 0)
+            {
+                throw new IllegalArgumentException("Item " + itemId + " was not resolved");
+            }
+
+            return new OsrsKillboardItem(itemId, names[i], quantity, unitPrices[i] * (long) quantity);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.osrskillboard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Most valuable kills and items of the history, kept up to date as records are added.
+ *
+ * The top kills are a bounded min-heap on kill value, so adding a record is O(log k). Item totals are kept
+ * in an open addressed map from item id to quantity and value, and the top items are picked from it with
+ * a second bounded heap when asked for, without sorting the whole history.
+ */
+class OsrsKillboardLeaderboard
+{
+    private static final int INITIAL_ITEM_CAPACITY = 64;
+    private static final int EMPTY = -1;
+
+    private final int size;
+
+    private final OsrsKillboardRecord[] kills;
+    private int killCount;
+
+    private int[] itemIds;
+    private long[] itemQuantities;
+    private long[] itemValues;
+    private String[] itemNames;
+    private int itemCount;
+
+    OsrsKillboardLeaderboard(final int size)
+    {
+        this.size = size;
+        this.kills = new OsrsKillboardRecord[size];
+        clearItems(INITIAL_ITEM_CAPACITY);
+    }
+
+    void add(final OsrsKillboardRecord record)
+    {
+        if (record.getItems().length > 0)
+        {
+            offerKill(record);
+        }
+
+        for (OsrsKillboardItem item : record.getItems())
+        {
+            addItem(item);
+        }
+    }
+
+    void clear()
+    {
+        Arrays.fill(kills, null);
+        killCount = 0;
+        clearItems(INITIAL_ITEM_CAPACITY);
+    }
+
+    /**
+     * Returns the most valuable kills, most valuable first.
+     */
+    List<OsrsKillboardRecord> getTopKills()
+    {
+        final List<OsrsKillboardRecord> top = new ArrayList<>(Arrays.asList(kills).subList(0, killCount));
+        top.sort(Comparator.comparingLong(OsrsKillboardRecord::getKillValue).reversed());
+        return top;
+    }
+
+    /**
+     * Returns the items with the highest total value over all kills, most valuable first. Each item
+     * holds the total quantity and its price is the total value.
+     */
+    List<OsrsKillboardItem> getTopItems()
+    {
+        // Min-heap of map slots on total value
+        final int[] heap = new int[size];
+        int count = 0;
+        for (int slot = 0; slot < itemIds.length; slot++)
+        {
+            if (itemIds[slot] == EMPTY)
+            {
+                continue;
+            }
+
+            if (count < size)
+            {
+                heap[count] = slot;
+                siftUp(heap, count++, itemValues);
+            }
+            else if (itemValues[slot] > itemValues[heap[0]])
+            {
+                heap[0] = slot;
+                siftDown(heap, count, itemValues);
+            }
+        }
+
+        final List<OsrsKillboardItem> top = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            final int slot = heap[i];
+            top.add(new OsrsKillboardItem(itemIds[slot], itemNames[slot],
+                    (int) Math.min(itemQuantities[slot], Integer.MAX_VALUE), itemValues[slot]));
+        }
+        top.sort(Comparator.comparingLong(OsrsKillboardItem::getGePrice).reversed());
+        return top;
+    }
+
+    private void offerKill(final OsrsKillboardRecord record)
+    {
+        if (killCount < size)
+        {
+            int i = killCount++;
+            kills[i] = record;
+            while (i > 0)
+            {
+                final int parent = (i - 1) >>> 1;
+                if (kills[parent].getKillValue() <= kills[i].getKillValue())
+                {
+                    break;
+                }
+                swap(kills, i, parent);
+                i = parent;
+            }
+            return;
+        }
+
+        if (size == 0 || record.getKillValue() <= kills[0].getKillValue())
+        {
+            return;
+        }
+
+        kills[0] = record;
+        int i = 0;
+        while (true)
+        {
+            final int left = 2 * i + 1;
+            if (left >= killCount)
+            {
+                break;
+            }
+
+            final int right = left + 1;
+            final int smallest = right < killCount && kills[right].getKillValue() < kills[left].getKillValue() ? right : left;
+            if (kills[i].getKillValue() <= kills[smallest].getKillValue())
+            {
+                break;
+            }
+            swap(kills, i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void addItem(final OsrsKillboardItem item)
+    {
+        if ((itemCount + 1) * 2 > itemIds.length)
+        {
+            growItems();
+        }
+
+        final int slot = itemSlot(itemIds, item.getId());
+        if (itemIds[slot] == EMPTY)
+        {
+            itemIds[slot] = item.getId();
+            itemNames[slot] = item.getName();
+            itemCount++;
+        }
+        itemQuantities[slot] += item.getQuantity();
+        itemValues[slot] += item.getGePrice();
+    }
+
+    private void growItems()
+    {
+        final int[] ids = itemIds;
+        final long[] quantities = itemQuantities;
+        final long[] values = itemValues;
+        final String[] names = itemNames;
+        clearItems(ids.length * 2);
+
+        for (int i = 0; i < ids.length; i++)
+        {
+            if (ids[i] == EMPTY)
+            {
+                continue;
+            }
+
+            final int slot = itemSlot(itemIds, ids[i]);
+            itemIds[slot] = ids[i];
+            itemQuantities[slot] = quantities[i];
+            itemValues[slot] = values[i];
+            itemNames[slot] = names[i];
+            itemCount++;
+        }
+    }
+
+    private void clearItems(final int capacity)
+    {
+        itemIds = new int[capacity];
+        Arrays.fill(itemIds, EMPTY);
+        itemQuantities = new long[capacity];
+        itemValues = new long[capacity];
+        itemNames = new String[capacity];
+        itemCount = 0;
+    }
+
+    /**
+     * Returns the slot holding the id, or the empty slot it belongs in. Capacity is a power of two.
+     */
+    private static int itemSlot(final int[] ids, final int id)
+    {
+        final int mask = ids.length - 1;
+        int slot = (id * 0x9E3779B9) >>> 16 & mask;
+        while (ids[slot] != EMPTY && ids[slot] != id)
+        {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static void siftUp(final int[] heap, int i, final long[] values)
+    {
+        while (i > 0)
+        {
+            final int parent = (i - 1) >>> 1;
+            if (values[heap[parent]] <= values[heap[i]])
+            {
+                break;
+            }
+            swap(heap, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(final int[] heap, final int count, final long[] values)
+    {
+        int i = 0;
+        while (true)
+        {
+            final int left = 2 * i + 1;
+            if (left >= count)
+            {
+                break;
+            }
+
+            final int right = left + 1;
+            final int smallest = right < count && values[heap[right]] < values[heap[left]] ? right : left;
+            if (values[heap[i]] <= values[heap[smallest]])
+            {
+                break;
+            }
+            swap(heap, i, smallest);
+            i = smallest;
+        }
+    }
+
+    private static void swap(final int[] heap, final int a, final int b)
+    {
+        final int tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+    }
+
+    private static <T> void swap(final T[] heap, final int a, final int b)
+    {
+        final T tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+    }
+}
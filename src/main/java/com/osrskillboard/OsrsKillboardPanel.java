@@ -1,5 +1,6 @@
 package com.osrskillboard;
 
+import net.runelite.client.RuneLite;
 import net.runelite.client.game.ItemManager;
 import net.runelite.client.ui.ColorScheme;
 import net.runelite.client.ui.FontManager;
@@ -13,13 +14,24 @@ import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.awt.datatransfer.StringSelection;
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 class OsrsKillboardPanel extends PluginPanel
 {
-    private static final int MAX_LOOT_BOXES = 500;
+    // Records kept on the heap, older ones are spilled to disk. Also the most loot boxes shown, as only these are
+    static final int MAX_RECORDS_IN_MEMORY = 1000;
+    private static final int LEADERBOARD_SIZE = 10;
+    static final File SPILL_DIR = new File(RuneLite.RUNELITE_DIR, "osrskillboard");
     private static final String HTML_LABEL_TEMPLATE =
             "<html><body style='color:%s'>%s<span style='color:white'>%s</span></body></html>";
 
@@ -35,29 +47,93 @@ class OsrsKillboardPanel extends PluginPanel
     private final JLabel overallGpLabel = new JLabel();
     private final JLabel overallIcon = new JLabel();
 
+    // Most valuable kills and items, shown instead of the loot boxes
+    private final JPanel leaderboardContainer = new JPanel();
+    private final OsrsKillboardLeaderboard leaderboard = new OsrsKillboardLeaderboard(LEADERBOARD_SIZE);
+    private boolean showLeaderboard;
+
+    // Shown while the killboard API circuit is not closed
+    private final JLabel apiStatusLabel = new JLabel();
+
     // Details and navigation
     private final JPanel actionsContainer = new JPanel();
     private final JLabel detailsTitle = new JLabel();
 
     // Log collection
-    private final List<OsrsKillboardRecord> records = new ArrayList<>();
+    private final OsrsKillboardRecordStore records;
     private final List<OsrsKillboardBox> boxes = new ArrayList<>();
-
-    private final ItemManager itemManager;
+    // Grouped boxes by title, least recently updated first. Only kept once grouping has been turned on
+    private final Map<String, OsrsKillboardBox> groupedBoxes = new LinkedHashMap<>();
+    private boolean grouped;
+    private boolean groupedBuilt;
+    // Grouped boxes are built from the whole history off the EDT. Builds overtaken by a newer one are
+    // dropped, records added while one runs are combined into its boxes once it is applied.
+    private long groupedVersion;
+    private boolean groupedLoading;
+    private final List<OsrsKillboardRecord> groupedPending = new ArrayList<>();
+
+    private final OsrsKillboardIconCache iconCache;
+    // Prepares loot box contents and rewrites re-priced spilled records off the EDT, its thread stops when idle
+    private final ThreadPoolExecutor backgroundExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r ->
+    {
+        final Thread thread = new Thread(r, "OsrsKillboard panel worker");
+        thread.setDaemon(true);
+        return thread;
+    });
     private final OsrsKillboardPlugin plugin;
     private final OsrsKillboardConfig config;
 
     private String currentView;
 
+    // Session totals, kept up to date incrementally as records are added and re-priced
+    private long overallKills;
+    private long overallGp;
+    private long overallCurrentGp;
+
+    private OsrsKillboardPriceSnapshot priceSnapshot;
+    private boolean showCurrentValue;
+    private boolean built;
+    // Set on the EDT when the plugin stops, read by clients deciding where a result goes
+    private volatile boolean closed;
+    private int lootBoxLimit;
+
     OsrsKillboardPanel(final OsrsKillboardPlugin plugin, final ItemManager itemManager, final OsrsKillboardConfig config)
     {
-        this.itemManager = itemManager;
+        this(plugin, itemManager, config, SPILL_DIR);
+    }
+
+    OsrsKillboardPanel(final OsrsKillboardPlugin plugin, final ItemManager itemManager, final OsrsKillboardConfig config,
+                       final File spillDir)
+    {
+        this.iconCache = new OsrsKillboardIconCache(itemManager, config.iconCacheSize());
+        this.backgroundExecutor.allowCoreThreadTimeOut(true);
+        this.lootBoxLimit = Math.min(config.lootBoxLimit(), MAX_RECORDS_IN_MEMORY);
         this.plugin = plugin;
         this.config = config;
+        this.records = OsrsKillboardRecordStore.create(MAX_RECORDS_IN_MEMORY, spillDir);
 
         setBorder(new EmptyBorder(6, 6, 6, 6));
         setBackground(ColorScheme.DARK_GRAY_COLOR);
         setLayout(new BorderLayout());
+    }
+
+    @Override
+    public void onActivate()
+    {
+        build();
+    }
+
+    /**
+     * Builds the panel contents the first time it is opened. Until then records are only stored,
+     * so nothing Swing related runs at plugin startup or on kills made while the panel was never shown.
+     */
+    private void build()
+    {
+        if (built)
+        {
+            return;
+        }
+        built = true;
 
         // Create layout panel for wrapping
         final JPanel layoutPanel = new JPanel();
@@ -73,6 +149,11 @@ class OsrsKillboardPanel extends PluginPanel
 
         actionsContainer.add(leftTitleContainer, BorderLayout.WEST);
 
+        apiStatusLabel.setFont(FontManager.getRunescapeSmallFont());
+        apiStatusLabel.setForeground(ColorScheme.PROGRESS_ERROR_COLOR);
+        apiStatusLabel.setBorder(new EmptyBorder(5, 0, 0, 0));
+        apiStatusLabel.setVisible(false);
+
         // Create panel that will contain overall data
         overallPanel.setBorder(
                 BorderFactory.createCompoundBorder(
@@ -104,6 +185,12 @@ class OsrsKillboardPanel extends PluginPanel
             // If not in detailed view, remove all, otherwise only remove for the currently detailed title
             records.removeIf(r -> r.matches(currentView));
             boxes.removeIf(b -> b.matches(currentView));
+            groupedBoxes.values().removeIf(b -> b.matches(currentView));
+            if (groupedBuilt)
+            {
+                buildGroupedBoxes();
+            }
+            updateLeaderboardRecords();
             updateOverall();
             logsContainer.removeAll();
             logsContainer.repaint();
@@ -112,21 +199,57 @@ class OsrsKillboardPanel extends PluginPanel
             OsrsKillboardClient client = plugin.getOsrsKillboardClient();
         });
 
+        // Switch between the value at kill time and the value at current GE prices
+        final JCheckBoxMenuItem currentValue = new JCheckBoxMenuItem("Show current value");
+        currentValue.addActionListener(e ->
+        {
+            showCurrentValue = currentValue.isSelected();
+            if (showCurrentValue)
+            {
+                plugin.repriceLoot();
+            }
+            boxes.forEach(b -> b.setShowCurrentValue(showCurrentValue));
+            groupedBoxes.values().forEach(b -> b.setShowCurrentValue(showCurrentValue));
+            updateOverallLabels();
+        });
+
+        // Switch between one box per record and one box per title
+        final JCheckBoxMenuItem group = new JCheckBoxMenuItem("Group by victim");
+        group.addActionListener(e -> setGrouped(group.isSelected()));
+
+        // Switch between the loot boxes and the most valuable kills and items
+        final JCheckBoxMenuItem leaderboardItem = new JCheckBoxMenuItem("Show leaderboard");
+        leaderboardItem.addActionListener(e -> setShowLeaderboard(leaderboardItem.isSelected()));
+
         // Create popup menu
         final JPopupMenu popupMenu = new JPopupMenu();
         popupMenu.setBorder(new EmptyBorder(5, 5, 5, 5));
         popupMenu.add(reset);
+        popupMenu.add(currentValue);
+        popupMenu.add(group);
+        popupMenu.add(leaderboardItem);
         overallPanel.setComponentPopupMenu(popupMenu);
 
         // Create loot boxes wrapper
         logsContainer.setLayout(new BoxLayout(logsContainer, BoxLayout.Y_AXIS));
         layoutPanel.add(actionsContainer);
+        layoutPanel.add(apiStatusLabel);
         layoutPanel.add(overallPanel);
         layoutPanel.add(logsContainer);
 
+        leaderboardContainer.setLayout(new BoxLayout(leaderboardContainer, BoxLayout.Y_AXIS));
+        leaderboardContainer.setVisible(false);
+        layoutPanel.add(leaderboardContainer);
+
         // Add error pane
         errorPanel.setContent("OSRS Killboard", "You haven't killed any players yet.");
         add(errorPanel);
+
+        plugin.loadPanelIcons();
+        if (records.size() > 0)
+        {
+            rebuild();
+        }
     }
 
     void loadHeaderIcon(BufferedImage img)
@@ -134,6 +257,27 @@ class OsrsKillboardPanel extends PluginPanel
         overallIcon.setIcon(new ImageIcon(img));
     }
 
+    /**
+     * Shows whether kills are currently reaching OSRSKillboard.com or only kept locally.
+     */
+    void updateApiState(OsrsKillboardCircuitBreaker.State state)
+    {
+        switch (state)
+        {
+            case OPEN:
+                apiStatusLabel.setText("OSRSKillboard.com unreachable, kills are kept locally");
+                apiStatusLabel.setVisible(true);
+                break;
+            case HALF_OPEN:
+                apiStatusLabel.setText("Checking if OSRSKillboard.com is back...");
+                apiStatusLabel.setVisible(true);
+                break;
+            default:
+                apiStatusLabel.setVisible(false);
+                break;
+        }
+    }
+
     /**
      * Adds a new entry to the plugin.
      * Creates a subtitle, adds a new entry and then passes off to the render methods, that will decide
@@ -141,15 +285,207 @@ class OsrsKillboardPanel extends PluginPanel
      */
     void add(final String eventName, final int actorLevel, OsrsKillboardItem[] items, String killId)
     {
+        if (closed)
+        {
+            return;
+        }
+
         final String subTitle = actorLevel > -1 ? "(lvl-" + actorLevel + ")" : "";
-        final OsrsKillboardRecord record = new OsrsKillboardRecord(eventName, subTitle, items, System.currentTimeMillis(), killId);
-        records.add(record);
-        OsrsKillboardBox box = buildBox(record);
-        if (box != null)
+        final int priceVersion = priceSnapshot == null ? 0 : priceSnapshot.getVersion();
+        final OsrsKillboardRecord record = new OsrsKillboardRecord(eventName, subTitle, items, System.currentTimeMillis(), killId, priceVersion);
+        final OsrsKillboardEvents.Panel event = beginPanelEvent("add");
+        try
         {
-            box.rebuild();
-            updateOverall();
+            records.add(record);
+            if (record.matches(currentView))
+            {
+                leaderboard.add(record);
+            }
+            if (!built)
+            {
+                return;
+            }
+
+            OsrsKillboardBox box = buildBox(record);
+            if (box != null)
+            {
+                box.rebuild();
+                if (groupedLoading)
+                {
+                    groupedPending.add(record);
+                }
+                else if (groupedBuilt)
+                {
+                    buildGroupedBox(record).rebuild();
+                }
+                addToOverall(record);
+                updateOverallLabels();
+            }
+        }
+        finally
+        {
+            commitPanelEvent(event);
+        }
+    }
+
+    /**
+     * Changes how many loot boxes are shown, rebuilding only the boxes.
+     */
+    void setLootBoxLimit(int lootBoxLimit)
+    {
+        lootBoxLimit = Math.min(lootBoxLimit, MAX_RECORDS_IN_MEMORY);
+        if (this.lootBoxLimit == lootBoxLimit)
+        {
+            return;
+        }
+
+        this.lootBoxLimit = lootBoxLimit;
+        if (built)
+        {
+            rebuild();
+        }
+    }
+
+    /**
+     * Drops the history and its spill file once the plugin stops. Results of kills still arriving for
+     * this panel afterwards are ignored, a later start shows them on its own panel.
+     */
+    void close()
+    {
+        closed = true;
+        records.close();
+    }
+
+    boolean isClosed()
+    {
+        return closed;
+    }
+
+    void setIconCacheSize(int iconCacheSize)
+    {
+        iconCache.setMaxSize(iconCacheSize);
+    }
+
+    /**
+     * Switches between flat and grouped boxes. Both sets are kept up to date once built, so switching
+     * only swaps the components in the container.
+     */
+    private void setGrouped(boolean grouped)
+    {
+        this.grouped = grouped;
+        if (grouped && !groupedBuilt)
+        {
+            groupedBuilt = true;
+            buildGroupedBoxes();
+        }
+
+        logsContainer.removeAll();
+        for (OsrsKillboardBox box : grouped ? groupedBoxes.values() : boxes)
+        {
+            logsContainer.add(box, 0);
+        }
+        logsContainer.revalidate();
+        logsContainer.repaint();
+    }
+
+    private void setShowLeaderboard(boolean showLeaderboard)
+    {
+        this.showLeaderboard = showLeaderboard;
+        logsContainer.setVisible(!showLeaderboard);
+        leaderboardContainer.setVisible(showLeaderboard);
+        updateLeaderboard();
+    }
+
+    /**
+     * Fills the leaderboard view from the incrementally kept top kills and items. Only done while shown.
+     */
+    private void updateLeaderboard()
+    {
+        if (!showLeaderboard)
+        {
+            return;
+        }
+
+        leaderboardContainer.removeAll();
+        leaderboardContainer.add(leaderboardSection("Top kills"));
+        for (OsrsKillboardRecord record : leaderboard.getTopKills())
+        {
+            leaderboardContainer.add(leaderboardRow(record.getTitle() + " " + record.getSubTitle() + ": ", record.getKillValue()));
+        }
+
+        leaderboardContainer.add(leaderboardSection("Top items"));
+        for (OsrsKillboardItem item : leaderboard.getTopItems())
+        {
+            leaderboardContainer.add(leaderboardRow(item.getName() + " x " + QuantityFormatter.quantityToStackSize(item.getQuantity()) + ": ", item.getGePrice()));
+        }
+
+        leaderboardContainer.revalidate();
+        leaderboardContainer.repaint();
+    }
+
+    private static JLabel leaderboardSection(String title)
+    {
+        final JLabel label = new JLabel(title);
+        label.setFont(FontManager.getRunescapeSmallFont());
+        label.setForeground(Color.WHITE);
+        label.setBorder(new EmptyBorder(8, 0, 3, 0));
+        return label;
+    }
+
+    private static JLabel leaderboardRow(String key, long value)
+    {
+        final JLabel label = new JLabel(htmlLabel(key, value));
+        label.setFont(FontManager.getRunescapeSmallFont());
+        label.setBorder(new EmptyBorder(1, 0, 1, 0));
+        return label;
+    }
+
+    /**
+     * Returns every distinct item id in the history, for re-pricing. Reads the latest snapshot of the
+     * records, so it can be called from any thread and never reads the spill file.
+     */
+    int[] getDistinctItemIds()
+    {
+        return records.snapshot().distinctItemIds();
+    }
+
+    /**
+     * Re-values the records that are behind the given price snapshot. Totals are adjusted by the change
+     * in value of each record and only the price labels of the boxes are refreshed. Spilled records are
+     * re-valued and written back off the EDT, the totals are recomputed once they are.
+     */
+    void applyPriceSnapshot(OsrsKillboardPriceSnapshot snapshot)
+    {
+        priceSnapshot = snapshot;
+        records.update(record ->
+        {
+            final long value = record.getCurrentValue();
+            if (reprice(record, snapshot) && record.matches(currentView))
+            {
+                overallCurrentGp += record.getCurrentValue() - value;
+            }
+        });
+        records.updateSpilled(record -> reprice(record, snapshot), backgroundExecutor,
+                () -> SwingUtilities.invokeLater(this::updateOverall));
+
+        boxes.forEach(b -> b.reprice(snapshot));
+        groupedBoxes.values().forEach(b -> b.reprice(snapshot));
+        updateOverallLabels();
+    }
+
+    /**
+     * @return false if the record is already valued against the snapshot
+     */
+    private static boolean reprice(OsrsKillboardRecord record, OsrsKillboardPriceSnapshot snapshot)
+    {
+        if (record.getPriceVersion() >= snapshot.getVersion())
+        {
+            return false;
         }
+
+        record.setCurrentValue(snapshot.valueOf(record.getItems()));
+        record.setPriceVersion(snapshot.getVersion());
+        return true;
     }
 
     /**
@@ -157,8 +493,23 @@ class OsrsKillboardPanel extends PluginPanel
      */
     void addRecords(Collection<OsrsKillboardRecord> recs)
     {
+        if (closed)
+        {
+            return;
+        }
+
         records.addAll(recs);
-        rebuild();
+        for (OsrsKillboardRecord record : recs)
+        {
+            if (record.matches(currentView))
+            {
+                leaderboard.add(record);
+            }
+        }
+        if (built)
+        {
+            rebuild();
+        }
     }
 
     /**
@@ -166,21 +517,23 @@ class OsrsKillboardPanel extends PluginPanel
      */
     private void rebuild()
     {
+        final OsrsKillboardEvents.Panel event = beginPanelEvent("rebuild");
         logsContainer.removeAll();
         boxes.clear();
-        int start = 0;
-        if (records.size() > MAX_LOOT_BOXES)
+        groupedBoxes.clear();
+        for (OsrsKillboardRecord record : records.newest(lootBoxLimit))
         {
-            start = records.size() - MAX_LOOT_BOXES;
+            buildBox(record);
         }
-        for (int i = start; i < records.size(); i++)
+        boxes.forEach(OsrsKillboardBox::rebuild);
+        if (groupedBuilt)
         {
-            buildBox(records.get(i));
+            buildGroupedBoxes();
         }
-        boxes.forEach(OsrsKillboardBox::rebuild);
         updateOverall();
         logsContainer.revalidate();
         logsContainer.repaint();
+        commitPanelEvent(event);
     }
 
     /**
@@ -201,9 +554,130 @@ class OsrsKillboardPanel extends PluginPanel
         actionsContainer.setVisible(true);
         overallPanel.setVisible(true);
 
+        final OsrsKillboardBox box = createBox(record, record::equals);
+
+        // Add box to panel
+        boxes.add(box);
+        if (!grouped)
+        {
+            logsContainer.add(box, 0);
+        }
+
+        if (boxes.size() > lootBoxLimit)
+        {
+            logsContainer.remove(boxes.remove(0));
+        }
+
+        return box;
+    }
+
+    /**
+     * Builds the grouped boxes again from the whole history on the background executor, reading the
+     * spilled records back, so they add up to the totals. The current boxes are shown until then.
+     */
+    private void buildGroupedBoxes()
+    {
+        final long version = ++groupedVersion;
+        final int limit = lootBoxLimit;
+        final Map<String, OsrsKillboardBox.Totals> totals = new LinkedHashMap<>();
+        groupedLoading = true;
+        groupedPending.clear();
+        records.forEachAsync(record -> addGroupedTotals(totals, record, limit), backgroundExecutor,
+                () -> SwingUtilities.invokeLater(() -> applyGroupedBoxes(version, totals)));
+    }
+
+    /**
+     * Adds a record to the totals of its title, least recently updated first as the grouped boxes are.
+     */
+    private static void addGroupedTotals(Map<String, OsrsKillboardBox.Totals> grouped, OsrsKillboardRecord record, int limit)
+    {
+        OsrsKillboardBox.Totals totals = grouped.remove(record.getTitle());
+        if (totals == null)
+        {
+            totals = new OsrsKillboardBox.Totals();
+        }
+        totals.add(record);
+        grouped.put(record.getTitle(), totals);
+
+        if (grouped.size() > limit)
+        {
+            final Iterator<OsrsKillboardBox.Totals> eldest = grouped.values().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private void applyGroupedBoxes(long version, Map<String, OsrsKillboardBox.Totals> totals)
+    {
+        if (closed || version != groupedVersion)
+        {
+            return;
+        }
+
+        groupedLoading = false;
+        groupedBoxes.values().forEach(logsContainer::remove);
+        groupedBoxes.clear();
+        totals.forEach((title, t) ->
+        {
+            final OsrsKillboardBox box = createBox(t.getLatest(), r -> r.getTitle().equals(title));
+            box.setTotals(t);
+            groupedBoxes.put(title, box);
+            if (grouped)
+            {
+                logsContainer.add(box, 0);
+            }
+        });
+
+        groupedPending.forEach(this::buildGroupedBox);
+        groupedPending.clear();
+        groupedBoxes.values().forEach(OsrsKillboardBox::rebuild);
+        logsContainer.revalidate();
+        logsContainer.repaint();
+    }
+
+    /**
+     * Adds a record to the grouped box of its title, creating the box if there is none yet.
+     * The box is moved to the top and the caller is expected to rebuild it.
+     */
+    private OsrsKillboardBox buildGroupedBox(OsrsKillboardRecord record)
+    {
+        final String title = record.getTitle();
+        OsrsKillboardBox box = groupedBoxes.remove(title);
+        if (box == null)
+        {
+            box = createBox(record, r -> r.getTitle().equals(title));
+        }
+        else
+        {
+            box.combine(record);
+        }
+
+        groupedBoxes.put(record.getTitle(), box);
+        if (grouped)
+        {
+            logsContainer.remove(box);
+            logsContainer.add(box, 0);
+        }
+
+        if (groupedBoxes.size() > lootBoxLimit)
+        {
+            final Iterator<OsrsKillboardBox> eldest = groupedBoxes.values().iterator();
+            logsContainer.remove(eldest.next());
+            eldest.remove();
+        }
+
+        return box;
+    }
+
+    /**
+     * @param shown the records the box stands for, removed from the history when it is reset
+     */
+    private OsrsKillboardBox createBox(OsrsKillboardRecord record, Predicate<OsrsKillboardRecord> shown)
+    {
         // Create box
-        final OsrsKillboardBox box = new OsrsKillboardBox(itemManager, record.getTitle(), record.getSubTitle());
+        final OsrsKillboardBox box = new OsrsKillboardBox(iconCache, backgroundExecutor, record.getTitle(), record.getSubTitle());
         box.combine(record);
+        box.setShowCurrentValue(showCurrentValue);
 
         // Create popup menu
         final JPopupMenu popupMenu = new JPopupMenu();
@@ -212,14 +686,7 @@ class OsrsKillboardPanel extends PluginPanel
 
         // Create reset menu
         final JMenuItem reset = new JMenuItem("Reset");
-        reset.addActionListener(e ->
-        {
-            records.removeAll(box.getRecords());
-            boxes.remove(box);
-            updateOverall();
-            logsContainer.remove(box);
-            logsContainer.repaint();
-        });
+        reset.addActionListener(e -> removeRecords(shown));
 
         popupMenu.add(reset);
 
@@ -236,45 +703,109 @@ class OsrsKillboardPanel extends PluginPanel
             copyOsrsKillboardLink.addActionListener(e -> Toolkit.getDefaultToolkit().getSystemClipboard().setContents(osrsKillboardLink, null));
             popupMenu.add(copyOsrsKillboardLink);
         }
-        // Add box to panel
-        boxes.add(box);
-        logsContainer.add(box, 0);
 
-        if (boxes.size() > MAX_LOOT_BOXES)
+        return box;
+    }
+
+    /**
+     * Removes the records of a reset box from the history, which the boxes don't keep, then drops the
+     * flat boxes that showed them and builds the grouped boxes again from what is left.
+     */
+    private void removeRecords(Predicate<OsrsKillboardRecord> reset)
+    {
+        records.removeIf(reset);
+        updateLeaderboardRecords();
+
+        for (Iterator<OsrsKillboardBox> it = boxes.iterator(); it.hasNext(); )
         {
-            logsContainer.remove(boxes.remove(0));
+            final OsrsKillboardBox box = it.next();
+            // Flat boxes show a single record
+            if (reset.test(box.getTotals().getLatest()))
+            {
+                logsContainer.remove(box);
+                it.remove();
+            }
         }
 
-        return box;
+        if (groupedBuilt)
+        {
+            buildGroupedBoxes();
+        }
+
+        updateOverall();
+        logsContainer.revalidate();
+        logsContainer.repaint();
     }
 
+    /**
+     * Recomputes the totals from the records in memory and the running totals of the spilled ones,
+     * which cover the whole history as there is no view narrower than that.
+     */
     private void updateOverall()
     {
-        long overallKills = 0;
-        long overallGp = 0;
+        final OsrsKillboardEvents.Panel event = beginPanelEvent("updateOverall");
+        overallKills = records.getSpilledKills();
+        overallGp = records.getSpilledKillValue();
+        overallCurrentGp = records.getSpilledCurrentValue();
 
-        for (OsrsKillboardRecord record : records)
+        for (OsrsKillboardRecord record : records.snapshot())
         {
-            if (!record.matches(currentView))
+            if (record.matches(currentView))
             {
-                continue;
+                addToOverall(record);
             }
+        }
 
-            int present = record.getItems().length;
+        updateOverallLabels();
+        commitPanelEvent(event);
+    }
 
-            for (OsrsKillboardItem item : record.getItems())
+    /**
+     * Refills the leaderboard after records were removed, reading back the spilled ones. Added
+     * records are put on it as they come in.
+     */
+    private void updateLeaderboardRecords()
+    {
+        leaderboard.clear();
+        records.forEach(record ->
+        {
+            if (record.matches(currentView))
             {
-                overallGp += item.getGePrice();
+                leaderboard.add(record);
             }
+        });
+    }
 
-            if (present > 0)
-            {
-                overallKills++;
-            }
+    private static OsrsKillboardEvents.Panel beginPanelEvent(String operation)
+    {
+        final OsrsKillboardEvents.Panel event = new OsrsKillboardEvents.Panel();
+        event.begin();
+        event.operation = operation;
+        return event;
+    }
+
+    private void commitPanelEvent(OsrsKillboardEvents.Panel event)
+    {
+        event.recordCount = records.size();
+        event.commit();
+    }
+
+    private void addToOverall(OsrsKillboardRecord record)
+    {
+        overallGp += record.getKillValue();
+        overallCurrentGp += record.getCurrentValue();
+
+        if (record.getItems().length > 0)
+        {
+            overallKills++;
         }
+    }
 
+    private void updateOverallLabels()
+    {
         overallKillsLabel.setText(htmlLabel("Total count: ", overallKills));
-        overallGpLabel.setText(htmlLabel("Total value: ", overallGp));
+        overallGpLabel.setText(htmlLabel(showCurrentValue ? "Current value: " : "Total value: ", showCurrentValue ? overallCurrentGp : overallGp));
+        updateLeaderboard();
     }
 
     private static String htmlLabel(String key, long value)
@@ -1,11 +1,11 @@
 package com.osrskillboard;
 
-import com.google.common.collect.ImmutableSet;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.inject.Provides;
 import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.*;
 import net.runelite.api.events.GameStateChanged;
@@ -14,8 +14,10 @@ import net.runelite.api.events.WidgetLoaded;
 import net.runelite.api.gameval.InventoryID;
 import net.runelite.api.gameval.ItemID;
 import net.runelite.api.kit.KitType;
+import net.runelite.client.callback.ClientThread;
 import net.runelite.client.config.ConfigManager;
 import net.runelite.client.eventbus.Subscribe;
+import net.runelite.client.events.ConfigChanged;
 import net.runelite.client.events.PlayerLootReceived;
 import net.runelite.client.game.ItemManager;
 import net.runelite.client.game.ItemStack;
@@ -26,17 +28,20 @@ import net.runelite.client.ui.ClientToolbar;
 import net.runelite.client.ui.NavigationButton;
 import net.runelite.client.util.ImageUtil;
 import net.runelite.client.util.LinkBrowser;
+import okhttp3.HttpUrl;
 import org.apache.commons.lang3.StringUtils;
 
 import javax.inject.Inject;
+import javax.swing.SwingUtilities;
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
 import java.time.Instant;
-import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @PluginDescriptor(
@@ -62,27 +67,59 @@ public class OsrsKillboardPlugin extends Plugin
 	@Inject
 	private SpriteManager spriteManager;
 
+	@Inject
+	private ClientThread clientThread;
+
+	@Inject
+	private ScheduledExecutorService executor;
+
+	@Getter(AccessLevel.PACKAGE)
 	private OsrsKillboardPanel panel;
+	// Where the panel spills the records it no longer keeps in memory
+	@Setter(AccessLevel.PACKAGE)
+	private File spillDir = OsrsKillboardPanel.SPILL_DIR;
 	private NavigationButton navButton;
+	private OsrsKillboardItemEnricher itemEnricher;
+	private OsrsKillboardRepricer repricer;
+	private ScheduledFuture<?> repriceFuture;
+	// Only touched by the event handlers, on the client thread
 	private boolean chestLooted;
 	private boolean pvpKeysLooted;
+	private final OsrsKillboardDedupeCache recentKills = new OsrsKillboardDedupeCache(DEDUPE_TTL_MILLIS);
+	private final OsrsKillboardGearCache gearCache = new OsrsKillboardGearCache(TimeUnit.MINUTES.toMillis(REPRICE_INTERVAL_MINUTES));
 
 	// PvP loot keys (Wilderness/Deadman) reuse the Deadman loot containers, one per tab
-	private static final List<Integer> PVP_LOOT_KEY_CONTAINERS = List.of(
+	private static final int[] PVP_LOOT_KEY_CONTAINERS = {
 			InventoryID.DEADMAN_LOOT_INV0,
 			InventoryID.DEADMAN_LOOT_INV1,
 			InventoryID.DEADMAN_LOOT_INV2,
 			InventoryID.DEADMAN_LOOT_INV3,
 			InventoryID.DEADMAN_LOOT_INV4
-	);
+	};
+
+	// GE prices are refreshed by the client every half hour
+	private static final long REPRICE_INTERVAL_MINUTES = 30;
+	private static final long DEDUPE_TTL_MILLIS = 60_000;
+	private static final long SHUTDOWN_DRAIN_MILLIS = 2_000;
+	private static final String PVP_LOOT_CHEST = "PvP Loot Chest";
 
-	private static final List<Integer> PVP_LOOT_KEYS = List.of(
+	private static final int[] PVP_LOOT_KEYS = {
 			ItemID.WILDY_LOOT_KEY0,
 			ItemID.WILDY_LOOT_KEY1,
 			ItemID.WILDY_LOOT_KEY2,
 			ItemID.WILDY_LOOT_KEY3,
 			ItemID.WILDY_LOOT_KEY4
-	);
+	};
+
+	// Sorted for binary search, checked on every kill
+	private static final int[] SOUL_WARS_REGIONS = {8493, 8749, 9005};
+	private static final int[] LAST_MAN_STANDING_REGIONS = {13658, 13659, 13660, 13914, 13915, 13916, 13918, 13919, 13920, 14174, 14175, 14176, 14430, 14431, 14432};
+
+	private static final KitType[] EQUIPMENT_KITS = {
+			KitType.HEAD, KitType.TORSO, KitType.LEGS, KitType.BOOTS, KitType.HANDS,
+			KitType.SHIELD, KitType.WEAPON, KitType.AMULET, KitType.CAPE
+	};
+	private static final String[] EQUIPMENT_SLOTS = {"Head", "Torso", "Legs", "Boots", "Hands", "Shield", "Weapon", "Amulet", "Cape"};
 
 	@Provides
 	OsrsKillboardConfig provideConfig(ConfigManager configManager)
@@ -94,6 +131,13 @@ public class OsrsKillboardPlugin extends Plugin
 	@Inject
 	private OsrsKillboardClient osrsKillboardClient;
 
+	@Inject
+	private OsrsKillboardHistorySync historySync;
+
+	private long startedAt;
+	// Player whose past kills were loaded this session, client thread only
+	private String syncedPlayer;
+
 	private static Collection<ItemStack> stack(Collection<ItemStack> items) {
 		final List<ItemStack> list = new ArrayList<>();
 
@@ -118,10 +162,13 @@ public class OsrsKillboardPlugin extends Plugin
 
 	@Override
 	protected void startUp() {
-		log.info("OsrsKillboard started!");
+		final long start = System.nanoTime();
+		startedAt = System.currentTimeMillis();
 
-		panel = new OsrsKillboardPanel(this, itemManager, config);
-		spriteManager.getSpriteAsync(net.runelite.api.gameval.SpriteID.HeadiconsPkInterface.PLAYER_KILLER_SKULL, 0, panel ::loadHeaderIcon);
+		// The panel contents and icons are only built once the panel is first opened
+		panel = new OsrsKillboardPanel(this, itemManager, config, spillDir);
+		osrsKillboardClient.getCircuitBreaker().setListener(state -> SwingUtilities.invokeLater(() -> panel.updateApiState(state)));
+		osrsKillboardClient.start(panel);
 
 		final BufferedImage icon = ImageUtil.loadImageResource(getClass(), "panel_icon.png");
 
@@ -133,32 +180,149 @@ public class OsrsKillboardPlugin extends Plugin
 				.build();
 
 		clientToolbar.addNavigation(navButton);
+
+		itemEnricher = new OsrsKillboardItemEnricher(itemManager);
+		repricer = new OsrsKillboardRepricer(clientThread, itemEnricher::getUnitPrice);
+		repriceFuture = executor.scheduleWithFixedDelay(() ->
+		{
+			if (config.repriceLoot())
+			{
+				repriceLoot();
+			}
+		}, REPRICE_INTERVAL_MINUTES, REPRICE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+
+		log.info("OsrsKillboard started in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
 	}
 
 	@Override
 	protected void shutDown() {
 		log.info("OsrsKillboard stopped!");
 
+		// Refuse new submissions, queued ones get a bounded time to be sent off the EDT
+		osrsKillboardClient.shutDown(SHUTDOWN_DRAIN_MILLIS);
+		osrsKillboardClient.getCircuitBreaker().setListener(null);
 		clientToolbar.removeNavigation(navButton);
+		panel.close();
+		repriceFuture.cancel(false);
+		historySync.cancel();
+		syncedPlayer = null;
+		log.debug("Submission metrics: {}", osrsKillboardClient.getMetrics());
 		chestLooted = false;
+		gearCache.clear();
 	}
 
 	@Subscribe
 	public void onPlayerLootReceived(final PlayerLootReceived playerLootReceived) throws IOException {
+		final OsrsKillboardEvents.Capture event = new OsrsKillboardEvents.Capture();
+		event.begin();
+		boolean submitted = false;
+		try
+		{
+			submitted = capturePlayerLoot(playerLootReceived);
+		}
+		finally
+		{
+			// Only filled in when recorded, the handler runs for every kill
+			if (event.shouldCommit())
+			{
+				event.handler = "PlayerLootReceived";
+				event.itemCount = playerLootReceived.getItems().size();
+				event.submitted = submitted;
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * @return true if the kill was submitted
+	 */
+	private boolean capturePlayerLoot(final PlayerLootReceived playerLootReceived) {
 		if (isPlayerInSafeMinigame())
 		{
-			return;
+			return false;
 		}
 
 		final Player victim = playerLootReceived.getPlayer();
 		final Collection<ItemStack> items = playerLootReceived.getItems();
 		final String victimName = victim.getName();
 		final int victimCombat = victim.getCombatLevel();
-		final OsrsKillboardItem[] victimLoot = buildEntries(stack(items));
 
-		JsonObject killJson = buildKillJson(victim, victimLoot);
+		if (isDuplicate(victimName, items))
+		{
+			return false;
+		}
+
+		final Collection<ItemStack> loot = stack(items);
+		final Player pker = client.getLocalPlayer();
+
+		// Gear seen recently is reused as is, mostly the pker's own
+		final long now = System.currentTimeMillis();
+		final int[] victimGearIds = getEquipmentIds(victim);
+		final int[] pkerGearIds = getEquipmentIds(pker);
+		JsonObject victimGear = gearCache.get(victimGearIds, now);
+		JsonObject pkerGear = gearCache.get(pkerGearIds, now);
+
+		// Price the loot and any uncached gear in one pass
+		final int[] itemIds = new int[loot.size() + 2 * EQUIPMENT_KITS.length];
+		int count = addItemIds(loot, itemIds, 0);
+		if (victimGear == null)
+		{
+			System.arraycopy(victimGearIds, 0, itemIds, count, victimGearIds.length);
+			count += victimGearIds.length;
+		}
+		if (pkerGear == null)
+		{
+			System.arraycopy(pkerGearIds, 0, itemIds, count, pkerGearIds.length);
+			count += pkerGearIds.length;
+		}
+		final OsrsKillboardItemEnricher.Prices prices = itemEnricher.resolve(itemIds, count);
+
+		if (victimGear == null)
+		{
+			victimGear = getEquippedGearAsJson(victimGearIds, prices);
+			gearCache.put(victimGearIds, victimGear, now);
+		}
+		if (pkerGear == null)
+		{
+			pkerGear = getEquippedGearAsJson(pkerGearIds, prices);
+			gearCache.put(pkerGearIds, pkerGear, now);
+		}
+
+		final OsrsKillboardItem[] victimLoot = buildEntries(loot, prices);
 
-		osrsKillboardClient.submitPk(killJson, panel, victimName, victimCombat, victimLoot);
+		JsonObject killJson = buildKillJson(victim, victimLoot, victimGear);
+		JsonObject pkerProfile = buildPkerProfileJson(pker, pkerGear);
+
+		osrsKillboardClient.submitPk(killJson, pkerProfile, panel, victimName, victimCombat, victimLoot);
+		return true;
+	}
+
+	@Subscribe
+	public void onConfigChanged(ConfigChanged event)
+	{
+		if (!OsrsKillboardConfig.GROUP.equals(event.getGroup()))
+		{
+			return;
+		}
+
+		// Only what depends on the changed setting is rebuilt, the rest is read as it is used
+		switch (event.getKey())
+		{
+			case "lootBoxLimit":
+				SwingUtilities.invokeLater(() -> panel.setLootBoxLimit(config.lootBoxLimit()));
+				break;
+			case "iconCacheSize":
+				SwingUtilities.invokeLater(() -> panel.setIconCacheSize(config.iconCacheSize()));
+				break;
+			case "apiEndpoint":
+			case "additionalEndpoints":
+			case "additionalEndpointConcurrency":
+			case "additionalEndpointRetries":
+			case "shareBetweenClients":
+				// Runs on the client's own lifecycle thread, the shared executor never waits on the old endpoints
+				osrsKillboardClient.restart(panel, SHUTDOWN_DRAIN_MILLIS);
+				break;
+		}
 	}
 
 	@Subscribe
@@ -168,60 +332,98 @@ public class OsrsKillboardPlugin extends Plugin
 		{
 			chestLooted = false;
 		}
+
+		if (event.getGameState() == GameState.LOGGED_IN && config.syncHistory())
+		{
+			// The local player is set a few ticks after logging in
+			clientThread.invokeLater(() ->
+			{
+				final Player player = client.getLocalPlayer();
+				if (player == null || player.getName() == null)
+				{
+					return client.getGameState() != GameState.LOGGED_IN;
+				}
+
+				syncHistory(player.getName());
+				return true;
+			});
+		}
 	}
 
-	@Subscribe
-	public void onWidgetLoaded(WidgetLoaded widgetLoaded)
+	private void syncHistory(String playerName)
 	{
-		if (widgetLoaded.getGroupId() != net.runelite.api.gameval.InterfaceID.WILDY_LOOT_CHEST)
+		if (playerName.equals(syncedPlayer))
 		{
 			return;
 		}
+		syncedPlayer = playerName;
 
-		// Avoid duplicate logging while keys are present
-		if (pvpKeysLooted)
+		HttpUrl apiBase = HttpUrl.parse(config.apiEndpoint());
+		if (apiBase == null)
 		{
-			return;
+			apiBase = HttpUrl.parse(OsrsKillboardClient.DEFAULT_API_BASE);
 		}
 
-		// Aggregate loot across all PvP key tabs (Deadman loot containers)
-		final List<ItemStack> aggregated = new ArrayList<>();
-		for (int containerId : PVP_LOOT_KEY_CONTAINERS)
+		// Kills made since startup are already in the panel
+		historySync.sync(apiBase, playerName, startedAt, records ->
+		{
+			if (!records.isEmpty())
+			{
+				SwingUtilities.invokeLater(() -> panel.addRecords(records));
+			}
+		});
+	}
+
+	@Subscribe
+	public void onWidgetLoaded(WidgetLoaded widgetLoaded)
+	{
+		if (widgetLoaded.getGroupId() != net.runelite.api.gameval.InterfaceID.WILDY_LOOT_CHEST)
 		{
-			aggregated.addAll(toItemStacks(client.getItemContainer(containerId)));
+			return;
 		}
 
-		if (aggregated.isEmpty())
+		// Avoid duplicate logging while keys are present
+		if (pvpKeysLooted)
 		{
 			return;
 		}
 
-		final OsrsKillboardItem[] chestLoot = buildEntries(stack(aggregated));
-		JsonObject keyJson = buildKeyJson(chestLoot);
-		osrsKillboardClient.submitKeyLoot(keyJson, panel, chestLoot);
-		pvpKeysLooted = true;
+		submitKeyLoot();
 	}
 
 	@Subscribe
 	public void onItemContainerChanged(ItemContainerChanged event)
 	{
-		// If a PvP key tab container changes and we haven't recorded yet, aggregate and submit now
-		if (!pvpKeysLooted && PVP_LOOT_KEY_CONTAINERS.contains(event.getContainerId()))
+		final OsrsKillboardEvents.Capture captureEvent = new OsrsKillboardEvents.Capture();
+		captureEvent.begin();
+		boolean submitted = false;
+		try
 		{
-			final List<ItemStack> aggregated = new ArrayList<>();
-			for (int containerId : PVP_LOOT_KEY_CONTAINERS)
-			{
-				aggregated.addAll(toItemStacks(client.getItemContainer(containerId)));
-			}
-			if (!aggregated.isEmpty())
+			submitted = captureKeyLoot(event);
+		}
+		finally
+		{
+			// Counting the container walks its items on every change, so only when the event is recorded
+			if (captureEvent.shouldCommit())
 			{
-				final OsrsKillboardItem[] chestLoot = buildEntries(stack(aggregated));
-				JsonObject keyJson = buildKeyJson(chestLoot);
-				osrsKillboardClient.submitKeyLoot(keyJson, panel, chestLoot);
-				pvpKeysLooted = true;
-				return;
+				captureEvent.handler = "ItemContainerChanged";
+				captureEvent.itemCount = event.getItemContainer().count();
+				captureEvent.submitted = submitted;
+				captureEvent.commit();
 			}
 		}
+	}
+
+	/**
+	 * @return true if loot key loot was submitted
+	 */
+	private boolean captureKeyLoot(ItemContainerChanged event)
+	{
+		// If a PvP key tab container changes and we haven't recorded yet, aggregate and submit now
+		if (!pvpKeysLooted && contains(PVP_LOOT_KEY_CONTAINERS, event.getContainerId()) && submitKeyLoot())
+		{
+			return true;
+		}
 
 		// While the player still has any PvP loot key in inventory, keep the flag set.
 		// Once all keys are gone, allow the next chest open to be recorded again.
@@ -230,49 +432,121 @@ public class OsrsKillboardPlugin extends Plugin
 			final ItemContainer inventory = client.getItemContainer(InventoryID.INV);
 			if (inventory != null)
 			{
-				pvpKeysLooted = PVP_LOOT_KEYS.stream().anyMatch(inventory::contains);
+				pvpKeysLooted = false;
+				for (int key : PVP_LOOT_KEYS)
+				{
+					if (inventory.contains(key))
+					{
+						pvpKeysLooted = true;
+						break;
+					}
+				}
 			}
 		}
+
+		return false;
 	}
 
-	private static Collection<ItemStack> toItemStacks(ItemContainer container)
+	/**
+	 * Aggregates loot across all PvP key tabs (Deadman loot containers) and submits it.
+	 *
+	 * @return true if there was loot to record
+	 */
+	private boolean submitKeyLoot()
+	{
+		final List<ItemStack> aggregated = new ArrayList<>();
+		for (int containerId : PVP_LOOT_KEY_CONTAINERS)
+		{
+			addItemStacks(client.getItemContainer(containerId), aggregated);
+		}
+
+		if (aggregated.isEmpty())
+		{
+			return false;
+		}
+
+		pvpKeysLooted = true;
+		if (isDuplicate(PVP_LOOT_CHEST, aggregated))
+		{
+			return true;
+		}
+
+		// Tabs often hold the same items, each is only resolved once
+		final Collection<ItemStack> loot = stack(aggregated);
+		final int[] itemIds = new int[loot.size()];
+		final OsrsKillboardItemEnricher.Prices prices = itemEnricher.resolve(itemIds, addItemIds(loot, itemIds, 0));
+
+		final OsrsKillboardItem[] chestLoot = buildEntries(loot, prices);
+		JsonObject keyJson = buildKeyJson(chestLoot);
+		osrsKillboardClient.submitKeyLoot(keyJson, panel, chestLoot);
+		return true;
+	}
+
+	private boolean isDuplicate(String name, Collection<ItemStack> items)
+	{
+		final long key = OsrsKillboardDedupeCache.hash(name, client.getWorld(), client.getTickCount(), items);
+		if (recentKills.checkAndAdd(key, System.currentTimeMillis()))
+		{
+			log.debug("Suppressed duplicate submission for {}", name);
+			osrsKillboardClient.getMetrics().onDuplicateSuppressed();
+			return true;
+		}
+
+		return false;
+	}
+
+	private static void addItemStacks(ItemContainer container, List<ItemStack> items)
 	{
 		if (container == null)
 		{
-			return Collections.emptyList();
+			return;
+		}
+
+		for (Item item : container.getItems())
+		{
+			if (item.getId() > -1)
+			{
+				items.add(new ItemStack(item.getId(), item.getQuantity()));
+			}
+		}
+	}
+
+	private static boolean contains(int[] values, int value)
+	{
+		for (int v : values)
+		{
+			if (v == value)
+			{
+				return true;
+			}
 		}
 
-		return Arrays.stream(container.getItems())
-				.filter(item -> item.getId() > -1)
-				.map(item -> new ItemStack(item.getId(), item.getQuantity()))
-				.collect(Collectors.toList());
+		return false;
 	}
 
-	private JsonObject buildKillJson(Player victim, OsrsKillboardItem[] lootItems) {
+	private JsonObject buildKillJson(Player victim, OsrsKillboardItem[] lootItems, JsonObject victimGear) {
+		final OsrsKillboardEvents.Serialize event = new OsrsKillboardEvents.Serialize();
+		event.begin();
+
 		JsonObject killJson = new JsonObject();
 
 		Player pker = client.getLocalPlayer();
 
 		// Kill Info
-		OffsetDateTime utc = OffsetDateTime.now(ZoneOffset.UTC);
 		killJson.addProperty("time", DateTimeFormatter.ISO_INSTANT.format(Instant.now()));
 		killJson.addProperty("world", client.getWorld());
 		killJson.addProperty("worldType", client.getWorldType().toString());
 		killJson.addProperty("localLocation", pker.getLocalLocation().toString());
 		killJson.addProperty("worldLocation", pker.getWorldLocation().toString());
 
-		// Pker Info
-		killJson.addProperty("pkerName", pker.getName());
-		killJson.addProperty("pkerAccountType", client.getAccountType().toString());
+		// Pker Info, the rest is sent through the session profile (see buildPkerProfileJson)
 		killJson.addProperty("pkerCombatLevel", pker.getCombatLevel());
-		killJson.add("pkerItemsEquipped", getEquippedGearForPlayer(pker));
 		killJson.addProperty("pkerIsSkulled", isPlayerSkulled(pker));
-		killJson.add("pkerCombatStats", getPlayerSkillsList());
 
 		// Victim Info
 		killJson.addProperty("victimName", victim.getName());
 		killJson.addProperty("victimCombatLevel", victim.getCombatLevel());
-		killJson.add("victimItemsEquipped", getEquippedGearForPlayer(victim));
+		killJson.add("victimItemsEquipped", victimGear);
 		killJson.addProperty("victimIsSkulled", isPlayerSkulled(victim));
 
 		// Misc
@@ -281,16 +555,36 @@ public class OsrsKillboardPlugin extends Plugin
 		killJson.addProperty("victimIsFriend", victim.isFriend());
 		killJson.addProperty("victimIsClanMember", victim.isFriendsChatMember());
 
+		event.payload = "kill";
+		event.itemCount = lootItems.length;
+		event.commit();
 		return killJson;
 	}
 
+	/**
+	 * Builds the part of the kill payload that rarely changes within a session. The client registers it
+	 * once and only sends a reference to it with each kill until the skills or gear change.
+	 */
+	private JsonObject buildPkerProfileJson(Player pker, JsonObject pkerGear) {
+		JsonObject profileJson = new JsonObject();
+
+		profileJson.addProperty("pkerName", pker.getName());
+		profileJson.addProperty("pkerAccountType", client.getAccountType().toString());
+		profileJson.add("pkerItemsEquipped", pkerGear);
+		profileJson.add("pkerCombatStats", getPlayerSkillsList());
+
+		return profileJson;
+	}
+
 	private JsonObject buildKeyJson(OsrsKillboardItem[] lootItems) {
+		final OsrsKillboardEvents.Serialize event = new OsrsKillboardEvents.Serialize();
+		event.begin();
+
 		JsonObject keyJson = new JsonObject();
 
 		Player pker = client.getLocalPlayer();
 
 		// Kill Info
-		OffsetDateTime utc = OffsetDateTime.now(ZoneOffset.UTC);
 		keyJson.addProperty("time", DateTimeFormatter.ISO_INSTANT.format(Instant.now()));
 		keyJson.addProperty("world", client.getWorld());
 		keyJson.addProperty("worldType", client.getWorldType().toString());
@@ -305,6 +599,9 @@ public class OsrsKillboardPlugin extends Plugin
 		keyJson.add("loot", getLootAsJson(lootItems));
 		keyJson.addProperty("lootValue", getLootValue(lootItems));
 
+		event.payload = "lootkey";
+		event.itemCount = lootItems.length;
+		event.commit();
 		return keyJson;
 	}
 
@@ -362,77 +659,70 @@ public class OsrsKillboardPlugin extends Plugin
 		return lootValue;
 	}
 
-	private OsrsKillboardItem buildOsrsKillboardItem(int itemId, int quantity) {
-		final ItemComposition itemComposition = itemManager.getItemComposition(itemId);
-		final int realItemId = itemComposition.getNote() != -1 ? itemComposition.getLinkedNoteId() : itemId;
-		final long price = (long) itemManager.getItemPrice(realItemId) * (long) quantity;
-		return new OsrsKillboardItem(itemId, itemComposition.getName(), quantity, price);
+	void loadPanelIcons()
+	{
+		spriteManager.getSpriteAsync(net.runelite.api.gameval.SpriteID.HeadiconsPkInterface.PLAYER_KILLER_SKULL, 0, panel ::loadHeaderIcon);
 	}
 
-	private JsonObject getEquippedGearForPlayer(Player player) {
-		ArrayList<Integer> equipmentIds = new ArrayList<>();
-
-		PlayerComposition playerComposition = player.getPlayerComposition();
-		equipmentIds.add(playerComposition.getEquipmentId(KitType.HEAD));
-		equipmentIds.add(playerComposition.getEquipmentId(KitType.TORSO));
-		equipmentIds.add(playerComposition.getEquipmentId(KitType.LEGS));
-		equipmentIds.add(playerComposition.getEquipmentId(KitType.BOOTS));
-		equipmentIds.add(playerComposition.getEquipmentId(KitType.HANDS));
-		equipmentIds.add(playerComposition.getEquipmentId(KitType.SHIELD));
-		equipmentIds.add(playerComposition.getEquipmentId(KitType.WEAPON));
-		equipmentIds.add(playerComposition.getEquipmentId(KitType.AMULET));
-		equipmentIds.add(playerComposition.getEquipmentId(KitType.CAPE));
-
-		ArrayList<OsrsKillboardItem> realItemList = new ArrayList<>();
+	/**
+	 * Re-prices the loot of every record in the panel against the current GE prices.
+	 */
+	void repriceLoot()
+	{
+		// The ids come from a snapshot of the records, so the scan doesn't need the EDT
+		repricer.reprice(panel.getDistinctItemIds(), panel::applyPriceSnapshot);
+	}
 
-		for (int equipmentId : equipmentIds) {
-			OsrsKillboardItem newItem = buildOsrsKillboardItem(equipmentId, 1);
-			realItemList.add(newItem);
+	private static int[] getEquipmentIds(Player player) {
+		final PlayerComposition playerComposition = player.getPlayerComposition();
+		final int[] equipmentIds = new int[EQUIPMENT_KITS.length];
+		for (int i = 0; i < EQUIPMENT_KITS.length; i++) {
+			equipmentIds[i] = playerComposition.getEquipmentId(EQUIPMENT_KITS[i]);
 		}
 
-		OsrsKillboardItem[] equipmentArrayList = realItemList.toArray(new OsrsKillboardItem[realItemList.size()]);
-
-		return getEquippedGearAsJson(equipmentArrayList);
+		return equipmentIds;
 	}
 
-	private JsonObject getEquippedGearAsJson(OsrsKillboardItem[] equippedItems) {
-		final String[] equipmentSlots = {"Head", "Torso", "Legs", "Boots", "Hands", "Shield", "Weapon", "Amulet", "Cape"};
-
+	private JsonObject getEquippedGearAsJson(int[] equipmentIds, OsrsKillboardItemEnricher.Prices prices) {
 		JsonObject equipment = new JsonObject();
-		for (int i = 0; i < equipmentSlots.length; i++) {
-			equipment.add(equipmentSlots[i], buildLootItem(equippedItems[i]));
+		for (int i = 0; i < EQUIPMENT_SLOTS.length; i++) {
+			equipment.add(EQUIPMENT_SLOTS[i], buildLootItem(prices.item(equipmentIds[i], 1)));
 		}
 
 		return equipment;
 	}
 
-	private OsrsKillboardItem[] buildEntries(final Collection<ItemStack> itemStacks) {
-		return itemStacks.stream()
-				.map(itemStack -> buildOsrsKillboardItem(itemStack.getId(), itemStack.getQuantity()))
-				.toArray(OsrsKillboardItem[]::new);
-	}
+	private static int addItemIds(Collection<ItemStack> itemStacks, int[] itemIds, int count) {
+		for (ItemStack itemStack : itemStacks) {
+			itemIds[count++] = itemStack.getId();
+		}
 
-	private boolean isPlayerInSafeMinigame()
-	{
-		Set<Integer> SOUL_WARS_REGIONS = ImmutableSet.of(8493, 8749, 9005);
-		Set<Integer> LAST_MAN_STANDING_REGIONS = ImmutableSet.of(13658, 13659, 13660, 13914, 13915, 13916, 13918, 13919, 13920, 14174, 14175, 14176, 14430, 14431, 14432);
+		return count;
+	}
 
-		boolean playerInSafeMinigame = false;
-		if (isPlayerWithinMapRegion(LAST_MAN_STANDING_REGIONS) || isPlayerWithinMapRegion(SOUL_WARS_REGIONS)){
-			playerInSafeMinigame = true;
+	private OsrsKillboardItem[] buildEntries(final Collection<ItemStack> itemStacks, OsrsKillboardItemEnricher.Prices prices) {
+		final OsrsKillboardItem[] entries = new OsrsKillboardItem[itemStacks.size()];
+		int i = 0;
+		for (ItemStack itemStack : itemStacks) {
+			entries[i++] = prices.item(itemStack.getId(), itemStack.getQuantity());
 		}
 
-		return playerInSafeMinigame;
+		return entries;
+	}
+
+	private boolean isPlayerInSafeMinigame()
+	{
+		return isPlayerWithinMapRegion(LAST_MAN_STANDING_REGIONS) || isPlayerWithinMapRegion(SOUL_WARS_REGIONS);
 	}
 
-	private boolean isPlayerWithinMapRegion(Set<Integer> definedMapRegions)
+	private boolean isPlayerWithinMapRegion(int[] definedMapRegions)
 	{
-        WorldView worldView = client.getTopLevelWorldView();
+		WorldView worldView = client.getTopLevelWorldView();
 		final int[] mapRegions = worldView.getMapRegions();
 
 		for (int region : mapRegions)
 		{
-			if (definedMapRegions.contains(region))
+			if (Arrays.binarySearch(definedMapRegions, region) >= 0)
 			{
 				return true;
 			}
@@ -0,0 +1,29 @@
+package com.osrskillboard;
+
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * Unit prices of every item id in the panel history at one point in time.
+ */
+@Value
+class OsrsKillboardPriceSnapshot
+{
+    private final int version;
+    private final Map<Integer, Long> unitPrices;
+
+    /**
+     * Values the items against this snapshot, items it doesn't know keep their value at kill.
+     */
+    long valueOf(OsrsKillboardItem[] items)
+    {
+        long value = 0;
+        for (OsrsKillboardItem item : items)
+        {
+            final Long unitPrice = unitPrices.get(item.getId());
+            value += unitPrice == null ? item.getGePrice() : unitPrice * item.getQuantity();
+        }
+        return value;
+    }
+}
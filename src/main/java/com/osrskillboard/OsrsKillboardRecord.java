@@ -1,6 +1,10 @@
 package com.osrskillboard;
 
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
 import lombok.Value;
+import lombok.experimental.NonFinal;
 
 @Value
 class OsrsKillboardRecord
@@ -10,6 +14,37 @@ class OsrsKillboardRecord
     private final OsrsKillboardItem[] items;
     private final long timestamp;
     private final String OsrsKillboardKillId;
+    private final long killValue;
+
+    // Value against the price snapshot with version priceVersion, kept up to date by re-pricing on the EDT.
+    // Records are shared with the store's snapshots, so readers on other threads may see these change
+    // between reads, and one of the two ahead of the other.
+    @NonFinal
+    @Setter(AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
+    private volatile long currentValue;
+    @NonFinal
+    @Setter(AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
+    private volatile int priceVersion;
+
+    OsrsKillboardRecord(String title, String subTitle, OsrsKillboardItem[] items, long timestamp, String OsrsKillboardKillId, int priceVersion)
+    {
+        this.title = title;
+        this.subTitle = subTitle;
+        this.items = items;
+        this.timestamp = timestamp;
+        this.OsrsKillboardKillId = OsrsKillboardKillId;
+
+        long value = 0;
+        for (OsrsKillboardItem item : items)
+        {
+            value += item.getGePrice();
+        }
+        this.killValue = value;
+        this.currentValue = value;
+        this.priceVersion = priceVersion;
+    }
 
     /**
      * Checks if this record matches specified id
@@ -25,4 +60,4 @@ class OsrsKillboardRecord
 
         return title.equals(id);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,643 @@
+package com.osrskillboard;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Session history of the panel. The newest records are held in memory, older ones are spilled to a
+ * local file and read back by the views that need the whole history.
+ *
+ * The records in memory are kept in fixed size chunks that are only ever appended to, so a snapshot
+ * shares them and only copies the chunk references. A new snapshot is published after every change,
+ * which lets any thread read a consistent view of the newest records without locks while the EDT keeps
+ * changing the store. Removing records builds new chunks rather than changing shared ones.
+ *
+ * The store is otherwise used from the EDT, except for the spill file. Re-pricing rewrites the spilled
+ * records off the EDT, so everything about the spill file is guarded by a lock.
+ */
+@Slf4j
+class OsrsKillboardRecordStore
+{
+    private static final int CHUNK_SIZE = 64;
+
+    private final int capacity;
+    private final File spillFile;
+    // Chunks in order, all but the last one full. The first head records of the first chunk were spilled.
+    private final ArrayDeque<OsrsKillboardRecord[]> chunks = new ArrayDeque<>();
+    private int head;
+    private int size;
+    private final Object spillLock = new Object();
+    // Written with spillLock held, read without it on the EDT
+    private volatile int spilled;
+    // Appended to as records are spilled, flushed once per batch
+    private DataOutputStream spillOut;
+    // Set with spillLock held once the owner is gone, nothing touches the spill file afterwards
+    private boolean closed;
+    // Distinct item ids of the spilled records, the array is replaced rather than changed so snapshots can share it
+    private final Set<Integer> spilledItemIdSet = new HashSet<>();
+    private volatile int[] spilledItemIds = new int[0];
+    // Totals of the spilled records, so the panel totals don't need them read back
+    @Getter
+    private volatile long spilledKills;
+    @Getter
+    private volatile long spilledKillValue;
+    @Getter
+    private volatile long spilledCurrentValue;
+    private long version;
+    private volatile Snapshot snapshot = new Snapshot(0, new OsrsKillboardRecord[0][], 0, 0, spilledItemIds);
+
+    OsrsKillboardRecordStore(final int capacity, final File spillFile)
+    {
+        this.capacity = capacity;
+        this.spillFile = spillFile;
+        // Spilled records only belong to the session that wrote them
+        spillFile.getParentFile().mkdirs();
+        spillFile.delete();
+        spillFile.deleteOnExit();
+    }
+
+    /**
+     * Creates a store spilling to a file of its own in the given directory, so stores of earlier panels
+     * still open in this process never share it.
+     */
+    static OsrsKillboardRecordStore create(final int capacity, final File spillDir)
+    {
+        spillDir.mkdirs();
+        File spillFile;
+        try
+        {
+            spillFile = File.createTempFile("records-", ".spill", spillDir);
+        }
+        catch (IOException e)
+        {
+            spillFile = new File(spillDir, "records-" + ProcessHandle.current().pid() + "-" + System.nanoTime() + ".spill");
+            log.warn("Unable to create a spill file in {}, using {}", spillDir, spillFile, e);
+        }
+        return new OsrsKillboardRecordStore(capacity, spillFile);
+    }
+
+    /**
+     * Immutable view of the records in memory at one point, safe to read from any thread. Spilled
+     * records are not part of it, only the ids of their items are. The records themselves are shared
+     * with the store, so their re-priced values may change while a snapshot is read.
+     */
+    static final class Snapshot implements Iterable<OsrsKillboardRecord>
+    {
+        @Getter
+        private final long version;
+        private final OsrsKillboardRecord[][] chunks;
+        private final int head;
+        @Getter
+        private final int size;
+        private final int[] spilledItemIds;
+
+        private Snapshot(final long version, final OsrsKillboardRecord[][] chunks, final int head, final int size,
+                         final int[] spilledItemIds)
+        {
+            this.version = version;
+            this.chunks = chunks;
+            this.head = head;
+            this.size = size;
+            this.spilledItemIds = spilledItemIds;
+        }
+
+        /**
+         * Returns every distinct item id in the history, spilled records included.
+         */
+        int[] distinctItemIds()
+        {
+            final Set<Integer> ids = new HashSet<>();
+            for (int id : spilledItemIds)
+            {
+                ids.add(id);
+            }
+            for (OsrsKillboardRecord record : this)
+            {
+                for (OsrsKillboardItem item : record.getItems())
+                {
+                    ids.add(item.getId());
+                }
+            }
+            return ids.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        OsrsKillboardRecord get(final int index)
+        {
+            if (index < 0 || index >= size)
+            {
+                throw new IndexOutOfBoundsException(index + " of " + size);
+            }
+
+            final int i = head + index;
+            return chunks[i / CHUNK_SIZE][i % CHUNK_SIZE];
+        }
+
+        @Override
+        public Iterator<OsrsKillboardRecord> iterator()
+        {
+            return new Iterator<OsrsKillboardRecord>()
+            {
+                private int next;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return next < size;
+                }
+
+                @Override
+                public OsrsKillboardRecord next()
+                {
+                    if (next >= size)
+                    {
+                        throw new NoSuchElementException();
+                    }
+                    return get(next++);
+                }
+            };
+        }
+    }
+
+    /**
+     * Returns the latest snapshot, can be called from any thread.
+     */
+    Snapshot snapshot()
+    {
+        return snapshot;
+    }
+
+    int size()
+    {
+        return spilled + size;
+    }
+
+    void add(final OsrsKillboardRecord record)
+    {
+        append(record);
+        flushSpill();
+        publish();
+    }
+
+    /**
+     * Adds records by their timestamp among the ones held, so history loaded after this session's
+     * records still shows before them. Unless all of them are newer than the newest held, the chunks
+     * are rebuilt, and the spill file as well when records were spilled.
+     */
+    void addAll(final Collection<OsrsKillboardRecord> records)
+    {
+        final List<OsrsKillboardRecord> incoming = new ArrayList<>(records);
+        incoming.sort(Comparator.comparingLong(OsrsKillboardRecord::getTimestamp));
+
+        final Snapshot current = snapshot;
+        if (incoming.isEmpty() || current.size == 0 && spilled == 0
+            || current.size > 0 && current.get(current.size - 1).getTimestamp() <= incoming.get(0).getTimestamp())
+        {
+            incoming.forEach(this::append);
+            flushSpill();
+            publish();
+            return;
+        }
+
+        // Sorting is stable, so records with the same timestamp keep the held ones first
+        final List<OsrsKillboardRecord> merged;
+        final int inMemory;
+        synchronized (spillLock)
+        {
+            merged = spilled > 0 ? readSpilled() : new ArrayList<>();
+            current.forEach(merged::add);
+            merged.addAll(incoming);
+            merged.sort(Comparator.comparingLong(OsrsKillboardRecord::getTimestamp));
+
+            inMemory = Math.min(capacity, merged.size());
+            rewriteSpilled(merged.subList(0, merged.size() - inMemory));
+        }
+
+        // Snapshots may still be reading the current chunks
+        chunks.clear();
+        head = 0;
+        size = 0;
+        merged.subList(merged.size() - inMemory, merged.size()).forEach(this::append);
+        publish();
+    }
+
+    /**
+     * Returns up to the given number of the newest records, oldest first.
+     */
+    List<OsrsKillboardRecord> newest(final int count)
+    {
+        final Snapshot current = snapshot;
+        final int n = Math.min(count, current.size);
+        final List<OsrsKillboardRecord> list = new ArrayList<>(n);
+        for (int i = current.size - n; i < current.size; i++)
+        {
+            list.add(current.get(i));
+        }
+        return list;
+    }
+
+    /**
+     * Visits every record, oldest first. Spilled records are read back from disk, so changes made
+     * to them are lost, see {@link #updateSpilled(Consumer, Executor, Runnable)}.
+     */
+    void forEach(final Consumer<OsrsKillboardRecord> consumer)
+    {
+        if (spilled > 0)
+        {
+            readSpilled().forEach(consumer);
+        }
+
+        snapshot.forEach(consumer);
+    }
+
+    /**
+     * Visits every record on the executor, oldest first, reading the spilled ones back, then runs onDone
+     * there. Covers the history as it is at the call, records added afterwards are not visited. Records
+     * removed meanwhile may be visited or not, callers are expected to start over after removing.
+     */
+    void forEachAsync(final Consumer<OsrsKillboardRecord> consumer, final Executor executor, final Runnable onDone)
+    {
+        // Only the EDT spills, so here the snapshot and the spilled count agree
+        final Snapshot current = snapshot;
+        final int spilledCount = spilled;
+        executor.execute(() ->
+        {
+            if (spilledCount > 0)
+            {
+                readSpilled(spilledCount, consumer);
+            }
+            current.forEach(consumer);
+            onDone.run();
+        });
+    }
+
+    /**
+     * Visits the records in memory.
+     */
+    void update(final Consumer<OsrsKillboardRecord> consumer)
+    {
+        snapshot.forEach(consumer);
+        publish();
+    }
+
+    /**
+     * Visits the spilled records on the executor and writes them back, then runs onDone there. The spill
+     * file stays locked meanwhile, which only holds up the EDT if it spills or reads back records.
+     * Does nothing if no records were spilled.
+     */
+    void updateSpilled(final Consumer<OsrsKillboardRecord> consumer, final Executor executor, final Runnable onDone)
+    {
+        if (spilled == 0)
+        {
+            return;
+        }
+
+        executor.execute(() ->
+        {
+            synchronized (spillLock)
+            {
+                final List<OsrsKillboardRecord> records = readSpilled();
+                records.forEach(consumer);
+                rewriteSpilled(records);
+            }
+            onDone.run();
+        });
+    }
+
+    void removeIf(final Predicate<OsrsKillboardRecord> filter)
+    {
+        synchronized (spillLock)
+        {
+            if (spilled > 0)
+            {
+                final List<OsrsKillboardRecord> records = readSpilled();
+                if (records.removeIf(filter))
+                {
+                    rewriteSpilled(records);
+                }
+            }
+        }
+
+        // Snapshots may still be reading the current chunks, so the kept records go into new ones
+        final Snapshot current = snapshot;
+        chunks.clear();
+        head = 0;
+        size = 0;
+        for (OsrsKillboardRecord record : current)
+        {
+            if (!filter.test(record))
+            {
+                append(record);
+            }
+        }
+        publish();
+    }
+
+    void clear()
+    {
+        removeIf(r -> true);
+    }
+
+    /**
+     * Closes and deletes the spill file. Records spilled afterwards are dropped and the spilled records
+     * are no longer read back. Waits for a read or rewrite still running on another thread.
+     */
+    void close()
+    {
+        synchronized (spillLock)
+        {
+            closed = true;
+            closeSpill();
+            spillFile.delete();
+        }
+    }
+
+    private void append(final OsrsKillboardRecord record)
+    {
+        if (size == capacity)
+        {
+            final OsrsKillboardRecord[] first = chunks.getFirst();
+            spill(first[head]);
+            size--;
+            if (++head == CHUNK_SIZE)
+            {
+                chunks.removeFirst();
+                head = 0;
+            }
+        }
+
+        final int used = (head + size) % CHUNK_SIZE;
+        if (used == 0 && (head + size) / CHUNK_SIZE == chunks.size())
+        {
+            chunks.addLast(new OsrsKillboardRecord[CHUNK_SIZE]);
+        }
+        chunks.getLast()[used] = record;
+        size++;
+    }
+
+    private void publish()
+    {
+        snapshot = new Snapshot(++version, chunks.toArray(new OsrsKillboardRecord[0][]), head, size, spilledItemIds);
+    }
+
+    private void spill(final OsrsKillboardRecord record)
+    {
+        synchronized (spillLock)
+        {
+            if (closed)
+            {
+                return;
+            }
+
+            try
+            {
+                if (spillOut == null)
+                {
+                    spillOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile, true)));
+                }
+                writeRecord(spillOut, record);
+                spilled++;
+                addSpilled(record);
+            }
+            catch (IOException e)
+            {
+                log.warn("Unable to spill record to {}", spillFile, e);
+                closeSpill();
+            }
+        }
+    }
+
+    private void flushSpill()
+    {
+        synchronized (spillLock)
+        {
+            if (spillOut == null)
+            {
+                return;
+            }
+
+            try
+            {
+                spillOut.flush();
+            }
+            catch (IOException e)
+            {
+                log.warn("Unable to flush spilled records to {}", spillFile, e);
+                closeSpill();
+            }
+        }
+    }
+
+    private void closeSpill()
+    {
+        synchronized (spillLock)
+        {
+            if (spillOut == null)
+            {
+                return;
+            }
+
+            try
+            {
+                spillOut.close();
+            }
+            catch (IOException e)
+            {
+                log.warn("Unable to close spill file {}", spillFile, e);
+            }
+            spillOut = null;
+        }
+    }
+
+    private List<OsrsKillboardRecord> readSpilled()
+    {
+        synchronized (spillLock)
+        {
+            final List<OsrsKillboardRecord> records = new ArrayList<>(spilled);
+            if (closed)
+            {
+                return records;
+            }
+
+            flushSpill();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile))))
+            {
+                for (int i = 0; i < spilled; i++)
+                {
+                    records.add(readRecord(in));
+                }
+            }
+            catch (EOFException e)
+            {
+                // Cut the file back to the whole records, so later spills line up and the ids and totals match
+                log.warn("Spill file {} is shorter than expected, {} of {} records read", spillFile, records.size(), spilled);
+                rewriteSpilled(records);
+            }
+            catch (IOException e)
+            {
+                log.warn("Unable to read spilled records from {}", spillFile, e);
+            }
+            return records;
+        }
+    }
+
+    /**
+     * Streams the oldest spilled records back without holding them all, stopping early if the file was
+     * cut shorter since.
+     */
+    private void readSpilled(final int count, final Consumer<OsrsKillboardRecord> consumer)
+    {
+        synchronized (spillLock)
+        {
+            if (closed)
+            {
+                return;
+            }
+
+            flushSpill();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile))))
+            {
+                for (int i = 0; i < count; i++)
+                {
+                    consumer.accept(readRecord(in));
+                }
+            }
+            catch (EOFException e)
+            {
+                log.debug("Spilled records were removed while reading {}", spillFile);
+            }
+            catch (IOException e)
+            {
+                log.warn("Unable to read spilled records from {}", spillFile, e);
+            }
+        }
+    }
+
+    private void rewriteSpilled(final List<OsrsKillboardRecord> records)
+    {
+        synchronized (spillLock)
+        {
+            if (closed)
+            {
+                return;
+            }
+
+            closeSpill();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile, false))))
+            {
+                for (OsrsKillboardRecord record : records)
+                {
+                    writeRecord(out, record);
+                }
+            }
+            catch (IOException e)
+            {
+                log.warn("Unable to rewrite spilled records in {}", spillFile, e);
+            }
+
+            // Totals are only replaced once complete, the EDT may read them meanwhile
+            long kills = 0;
+            long killValue = 0;
+            long currentValue = 0;
+            spilledItemIdSet.clear();
+            for (OsrsKillboardRecord record : records)
+            {
+                if (record.getItems().length > 0)
+                {
+                    kills++;
+                }
+                killValue += record.getKillValue();
+                currentValue += record.getCurrentValue();
+                for (OsrsKillboardItem item : record.getItems())
+                {
+                    spilledItemIdSet.add(item.getId());
+                }
+            }
+
+            spilled = records.size();
+            spilledItemIds = spilledItemIdSet.stream().mapToInt(Integer::intValue).toArray();
+            spilledKills = kills;
+            spilledKillValue = killValue;
+            spilledCurrentValue = currentValue;
+        }
+    }
+
+    private void addSpilled(final OsrsKillboardRecord record)
+    {
+        if (record.getItems().length > 0)
+        {
+            spilledKills++;
+        }
+        spilledKillValue += record.getKillValue();
+        spilledCurrentValue += record.getCurrentValue();
+
+        boolean added = false;
+        for (OsrsKillboardItem item : record.getItems())
+        {
+            added |= spilledItemIdSet.add(item.getId());
+        }
+
+        if (added)
+        {
+            spilledItemIds = spilledItemIdSet.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private static void writeRecord(final DataOutputStream out, final OsrsKillboardRecord record) throws IOException
+    {
+        out.writeUTF(record.getTitle());
+        out.writeUTF(record.getSubTitle());
+        out.writeLong(record.getTimestamp());
+        out.writeUTF(record.getOsrsKillboardKillId() == null ? "" : record.getOsrsKillboardKillId());
+        out.writeInt(record.getPriceVersion());
+        out.writeLong(record.getCurrentValue());
+        out.writeShort(record.getItems().length);
+        for (OsrsKillboardItem item : record.getItems())
+        {
+            out.writeInt(item.getId());
+            out.writeUTF(item.getName() == null ? "" : item.getName());
+            out.writeInt(item.getQuantity());
+            out.writeLong(item.getGePrice());
+        }
+    }
+
+    private static OsrsKillboardRecord readRecord(final DataInputStream in) throws IOException
+    {
+        final String title = in.readUTF();
+        final String subTitle = in.readUTF();
+        final long timestamp = in.readLong();
+        final String killId = in.readUTF();
+        final int priceVersion = in.readInt();
+        final long currentValue = in.readLong();
+        final OsrsKillboardItem[] items = new OsrsKillboardItem[in.readUnsignedShort()];
+        for (int i = 0; i < items.length; i++)
+        {
+            items[i] = new OsrsKillboardItem(in.readInt(), in.readUTF(), in.readInt(), in.readLong());
+        }
+
+        final OsrsKillboardRecord record = new OsrsKillboardRecord(title, subTitle, items, timestamp, killId, priceVersion);
+        record.setCurrentValue(currentValue);
+        return record;
+    }
+}
@@ -0,0 +1,67 @@
+package com.osrskillboard;
+
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.callback.ClientThread;
+
+import javax.swing.SwingUtilities;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Re-prices stored loot against the current GE prices. Each distinct item id is priced once, a batch per
+ * client tick so the client thread is never held for long, and the finished snapshot is handed to the EDT.
+ */
+@Slf4j
+class OsrsKillboardRepricer
+{
+    private static final int BATCH_SIZE = 50;
+
+    private final ClientThread clientThread;
+    private final IntToLongFunction unitPrice;
+    private final AtomicBoolean running = new AtomicBoolean();
+    // Only touched on the client thread, the panel reads the version of the snapshot it was given
+    private int version;
+
+    OsrsKillboardRepricer(final ClientThread clientThread, final IntToLongFunction unitPrice)
+    {
+        this.clientThread = clientThread;
+        this.unitPrice = unitPrice;
+    }
+
+    /**
+     * Prices the given item ids and passes the resulting snapshot to the consumer on the EDT.
+     * Does nothing if a re-pricing is already running.
+     */
+    void reprice(final int[] itemIds, final Consumer<OsrsKillboardPriceSnapshot> onDone)
+    {
+        if (itemIds.length == 0 || !running.compareAndSet(false, true))
+        {
+            return;
+        }
+
+        final Map<Integer, Long> prices = new HashMap<>(itemIds.length * 2);
+        final int[] next = {0};
+        clientThread.invoke(() ->
+        {
+            final int end = Math.min(next[0] + BATCH_SIZE, itemIds.length);
+            for (; next[0] < end; next[0]++)
+            {
+                prices.put(itemIds[next[0]], unitPrice.applyAsLong(itemIds[next[0]]));
+            }
+
+            if (next[0] < itemIds.length)
+            {
+                return false;
+            }
+
+            final OsrsKillboardPriceSnapshot snapshot = new OsrsKillboardPriceSnapshot(++version, prices);
+            log.debug("Re-priced {} items, price snapshot {}", itemIds.length, snapshot.getVersion());
+            running.set(false);
+            SwingUtilities.invokeLater(() -> onDone.accept(snapshot));
+            return true;
+        });
+    }
+}
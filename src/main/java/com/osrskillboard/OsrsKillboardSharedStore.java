@@ -0,0 +1,307 @@
+package com.osrskillboard;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Append log of submissions shared by every client on the machine, so each panel shows the combined
+ * history and every submission is sent once, by a single client.
+ *
+ * The log is a memory mapped file guarded by a lock on its header. The header holds the write position
+ * and the position up to which submissions have been sent. Whichever client holds the lock on the sender
+ * file takes and sends them; when it exits the lock is released and another client takes over, starting
+ * again at whatever the previous sender took but did not complete. Once everything has been sent and the
+ * log is full, it starts over in a new generation.
+ */
+@Slf4j
+class OsrsKillboardSharedStore implements AutoCloseable
+{
+    private static final int MAGIC = 0x4F4B534C;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int GENERATION_OFFSET = 4;
+    private static final int WRITE_OFFSET = 8;
+    private static final int TAKEN_OFFSET = 16;
+    private static final int HEADER_SIZE = 24;
+
+    // File locks are held per JVM, so clients sharing a JVM also have to exclude each other here
+    private static final Object JVM_LOCK = new Object();
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final FileChannel senderChannel;
+    private FileLock senderLock;
+
+    // Reading state of this client
+    private int generation;
+    private long readPosition;
+    // End positions of the entries this client took and has not completed yet, in the order they were taken
+    private final ArrayDeque<Long> taken = new ArrayDeque<>();
+    // Completed ahead of an entry taken before them
+    private final Set<Long> completed = new HashSet<>();
+
+    /**
+     * Opens the log, creating it if needed. Reading starts at the current end of the log, what was
+     * appended before belongs to earlier sessions. Entries that were not taken yet are still taken.
+     */
+    OsrsKillboardSharedStore(final File logFile, final File senderFile, final int size) throws IOException
+    {
+        logFile.getParentFile().mkdirs();
+        channel = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        senderChannel = FileChannel.open(senderFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        synchronized (JVM_LOCK)
+        {
+            try (FileLock ignored = channel.lock(0, HEADER_SIZE, false))
+            {
+                if (buffer.getInt(MAGIC_OFFSET) != MAGIC)
+                {
+                    buffer.putInt(GENERATION_OFFSET, 0);
+                    buffer.putLong(WRITE_OFFSET, HEADER_SIZE);
+                    buffer.putLong(TAKEN_OFFSET, HEADER_SIZE);
+                    buffer.putInt(MAGIC_OFFSET, MAGIC);
+                }
+                generation = buffer.getInt(GENERATION_OFFSET);
+                readPosition = buffer.getLong(WRITE_OFFSET);
+            }
+        }
+    }
+
+    /**
+     * Appends an entry to the log.
+     *
+     * @return false if the log is full of entries that haven't been taken yet
+     */
+    boolean append(final byte[] entry)
+    {
+        synchronized (JVM_LOCK)
+        {
+            try (FileLock ignored = channel.lock(0, HEADER_SIZE, false))
+            {
+                return appendLocked(entry);
+            }
+            catch (IOException e)
+            {
+                log.warn("Unable to append to the shared store", e);
+                return false;
+            }
+        }
+    }
+
+    private boolean appendLocked(final byte[] entry)
+    {
+        long position = buffer.getLong(WRITE_OFFSET);
+        if (position + Integer.BYTES + entry.length > buffer.capacity())
+        {
+            if (buffer.getLong(TAKEN_OFFSET) != position || HEADER_SIZE + Integer.BYTES + entry.length > buffer.capacity())
+            {
+                return false;
+            }
+
+            // Everything was sent, start over
+            position = HEADER_SIZE;
+            buffer.putInt(GENERATION_OFFSET, buffer.getInt(GENERATION_OFFSET) + 1);
+            buffer.putLong(TAKEN_OFFSET, position);
+        }
+
+        buffer.putInt((int) position, entry.length);
+        buffer.duplicate().position((int) position + Integer.BYTES).put(entry);
+        buffer.putLong(WRITE_OFFSET, position + Integer.BYTES + entry.length);
+        return true;
+    }
+
+    /**
+     * Passes the entries appended by any client since the last call to the consumer. Entries of a
+     * generation that was replaced before this client read them are skipped.
+     */
+    void read(final Consumer<byte[]> consumer)
+    {
+        final List<byte[]> entries = new ArrayList<>();
+        synchronized (JVM_LOCK)
+        {
+            try (FileLock ignored = channel.lock(0, HEADER_SIZE, false))
+            {
+                final int current = buffer.getInt(GENERATION_OFFSET);
+                if (current != generation)
+                {
+                    generation = current;
+                    readPosition = HEADER_SIZE;
+                }
+
+                readPosition = readEntries(readPosition, buffer.getLong(WRITE_OFFSET), entries::add);
+            }
+            catch (IOException e)
+            {
+                log.warn("Unable to read the shared store", e);
+            }
+        }
+
+        entries.forEach(consumer);
+    }
+
+    /**
+     * Tells whether this client is the one sending the shared submissions, taking the role over if
+     * no other client holds it.
+     */
+    boolean isSender()
+    {
+        synchronized (JVM_LOCK)
+        {
+            if (senderLock != null && senderLock.isValid())
+            {
+                return true;
+            }
+
+            try
+            {
+                senderLock = senderChannel.tryLock();
+            }
+            catch (OverlappingFileLockException e)
+            {
+                // Held by another client in this JVM
+                senderLock = null;
+            }
+            catch (IOException e)
+            {
+                log.warn("Unable to lock the shared store sender file", e);
+                senderLock = null;
+            }
+            return senderLock != null;
+        }
+    }
+
+    /**
+     * Passes entries this client hasn't taken yet to the sender, oldest first, until it refuses one.
+     * Taken entries stay in the log until they are {@link Entry#complete completed}, should this client
+     * stop before that the next sender takes them again. Only to be called by the sender.
+     */
+    void take(final Predicate<Entry> sender)
+    {
+        synchronized (JVM_LOCK)
+        {
+            try (FileLock ignored = channel.lock(0, HEADER_SIZE, false))
+            {
+                // The log can't start over while entries taken here are incomplete
+                long position = taken.isEmpty() ? buffer.getLong(TAKEN_OFFSET) : taken.getLast();
+                final long end = buffer.getLong(WRITE_OFFSET);
+                while (position < end)
+                {
+                    final int length = buffer.getInt((int) position);
+                    final Entry entry = new Entry(entryAt(position, length), position + Integer.BYTES + length);
+                    if (!sender.test(entry))
+                    {
+                        break;
+                    }
+                    taken.addLast(entry.end);
+                    position = entry.end;
+                }
+            }
+            catch (IOException e)
+            {
+                log.warn("Unable to take from the shared store", e);
+            }
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        synchronized (JVM_LOCK)
+        {
+            try
+            {
+                if (senderLock != null)
+                {
+                    senderLock.release();
+                    senderLock = null;
+                }
+                senderChannel.close();
+                channel.close();
+            }
+            catch (IOException e)
+            {
+                log.warn("Unable to close the shared store", e);
+            }
+        }
+    }
+
+    /**
+     * An entry handed out by {@link #take}, taken again by the next sender until it is completed.
+     */
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    final class Entry
+    {
+        @Getter
+        private final byte[] data;
+        private final long end;
+
+        /**
+         * Marks the entry as sent and appends its result to the log in the same step, so a sender stopping
+         * in between can't have it sent twice.
+         *
+         * @return false if the result could not be appended, or nothing was marked as the store is closed
+         */
+        boolean complete(@Nullable final byte[] result)
+        {
+            synchronized (JVM_LOCK)
+            {
+                try (FileLock ignored = channel.lock(0, HEADER_SIZE, false))
+                {
+                    completed.add(end);
+                    long sent = -1;
+                    while (!taken.isEmpty() && completed.remove(taken.getFirst()))
+                    {
+                        sent = taken.removeFirst();
+                    }
+                    if (sent >= 0)
+                    {
+                        buffer.putLong(TAKEN_OFFSET, sent);
+                    }
+
+                    return result == null || appendLocked(result);
+                }
+                catch (IOException e)
+                {
+                    log.warn("Unable to complete a shared store entry", e);
+                    return false;
+                }
+            }
+        }
+    }
+
+    private long readEntries(long position, final long end, final Consumer<byte[]> consumer)
+    {
+        while (position < end)
+        {
+            final int length = buffer.getInt((int) position);
+            consumer.accept(entryAt(position, length));
+            position += Integer.BYTES + length;
+        }
+        return position;
+    }
+
+    private byte[] entryAt(final long position, final int length)
+    {
+        final byte[] entry = new byte[length];
+        buffer.duplicate().position((int) position + Integer.BYTES).get(entry);
+        return entry;
+    }
+}
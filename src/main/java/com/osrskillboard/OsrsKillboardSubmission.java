@@ -0,0 +1,54 @@
+package com.osrskillboard;
+
+import com.google.gson.JsonObject;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import okhttp3.RequestBody;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * A kill or loot key opening waiting to be sent, along with what the panel needs to show it afterwards.
+ * Compared by identity, each one is a single event on its way through the queues.
+ */
+@Getter
+@RequiredArgsConstructor
+final class OsrsKillboardSubmission
+{
+    private final String path;
+    private final JsonObject payload;
+    @Nullable
+    private final JsonObject pkerProfile;
+    private final String description;
+    private final String title;
+    private final int actorLevel;
+    private final OsrsKillboardItem[] loot;
+    private final OsrsKillboardPanel panel;
+    // Taken from the shared store, so it is already shown and may come from another client. Completed
+    // once sent, until then the next sender takes it again should this client stop.
+    @Nullable
+    private final OsrsKillboardSharedStore.Entry sharedEntry;
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+    private final long enqueuedAt = System.nanoTime();
+
+    // Full payload, serialized once and shared by every endpoint
+    @Getter(AccessLevel.NONE)
+    private RequestBody fullBody;
+
+    boolean isShared()
+    {
+        return sharedEntry != null;
+    }
+
+    synchronized RequestBody getFullBody(Supplier<RequestBody> serializer)
+    {
+        if (fullBody == null)
+        {
+            fullBody = serializer.get();
+        }
+        return fullBody;
+    }
+}
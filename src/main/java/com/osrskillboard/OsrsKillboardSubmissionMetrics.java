@@ -0,0 +1,98 @@
+package com.osrskillboard;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for the submission pipeline, safe to update from any thread.
+ */
+class OsrsKillboardSubmissionMetrics
+{
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAccumulator maxQueueDepth = new LongAccumulator(Math::max, 0);
+    // Longest time a submission sat in the queue before the sender picked it up
+    private final LongAccumulator maxStallNanos = new LongAccumulator(Math::max, 0);
+
+    void onEnqueued(int depth)
+    {
+        enqueued.increment();
+        maxQueueDepth.accumulate(depth);
+    }
+
+    void onRejected()
+    {
+        rejected.increment();
+    }
+
+    void onDequeued(long waitNanos)
+    {
+        maxStallNanos.accumulate(waitNanos);
+    }
+
+    void onSent()
+    {
+        sent.increment();
+    }
+
+    void onFailed()
+    {
+        failed.increment();
+    }
+
+    void onDuplicateSuppressed()
+    {
+        duplicates.increment();
+    }
+
+    long getEnqueued()
+    {
+        return enqueued.sum();
+    }
+
+    long getRejected()
+    {
+        return rejected.sum();
+    }
+
+    long getSent()
+    {
+        return sent.sum();
+    }
+
+    long getFailed()
+    {
+        return failed.sum();
+    }
+
+    long getDuplicates()
+    {
+        return duplicates.sum();
+    }
+
+    long getMaxQueueDepth()
+    {
+        return maxQueueDepth.get();
+    }
+
+    long getMaxStallMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(maxStallNanos.get());
+    }
+
+    @Override
+    public String toString()
+    {
+        return "enqueued=" + getEnqueued()
+                + ", rejected=" + getRejected()
+                + ", sent=" + getSent()
+                + ", failed=" + getFailed()
+                + ", duplicates=" + getDuplicates()
+                + ", maxQueueDepth=" + getMaxQueueDepth()
+                + ", maxStallMs=" + getMaxStallMillis();
+    }
+}
@@ -0,0 +1,107 @@
+package com.osrskillboard;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer.
+ *
+ * Producers claim a slot by moving the producer index forward and then publish their element into it.
+ * The consumer owns the consumer index and frees a slot before moving past it, so a producer never
+ * overwrites an element that hasn't been taken yet.
+ */
+final class OsrsKillboardSubmissionQueue<E>
+{
+    private final AtomicReferenceArray<E> buffer;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong producerIndex = new AtomicLong();
+    // Only written by the consumer thread
+    private volatile long consumerIndex;
+
+    OsrsKillboardSubmissionQueue(final int capacity)
+    {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1)
+        {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+
+        this.buffer = new AtomicReferenceArray<>(capacity);
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Adds an element, safe to call from any thread.
+     *
+     * @return false if the queue is full
+     */
+    boolean offer(final E element)
+    {
+        if (element == null)
+        {
+            throw new NullPointerException();
+        }
+
+        long index;
+        do
+        {
+            index = producerIndex.get();
+            if (index - consumerIndex >= capacity)
+            {
+                return false;
+            }
+        }
+        while (!producerIndex.compareAndSet(index, index + 1));
+
+        buffer.lazySet((int) index & mask, element);
+        return true;
+    }
+
+    /**
+     * Takes the oldest element, must only be called from the consumer thread.
+     *
+     * @return the element, or null if the queue is empty
+     */
+    E poll()
+    {
+        final long index = consumerIndex;
+        final int offset = (int) index & mask;
+        E element = buffer.get(offset);
+        if (element == null)
+        {
+            if (index == producerIndex.get())
+            {
+                return null;
+            }
+
+            // A producer claimed the slot but hasn't published into it yet
+            do
+            {
+                Thread.onSpinWait();
+                element = buffer.get(offset);
+            }
+            while (element == null);
+        }
+
+        buffer.lazySet(offset, null);
+        consumerIndex = index + 1;
+        return element;
+    }
+
+    int size()
+    {
+        final long size = producerIndex.get() - consumerIndex;
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    boolean isEmpty()
+    {
+        return producerIndex.get() == consumerIndex;
+    }
+
+    int capacity()
+    {
+        return capacity;
+    }
+}
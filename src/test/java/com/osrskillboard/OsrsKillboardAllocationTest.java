@@ -0,0 +1,448 @@
+package com.osrskillboard;
+
+import com.google.inject.Guice;
+import net.runelite.api.Client;
+import net.runelite.api.Item;
+import net.runelite.api.ItemComposition;
+import net.runelite.api.ItemContainer;
+import net.runelite.api.Player;
+import net.runelite.api.PlayerComposition;
+import net.runelite.api.WorldType;
+import net.runelite.api.WorldView;
+import net.runelite.api.coords.LocalPoint;
+import net.runelite.api.coords.WorldPoint;
+import net.runelite.api.events.ItemContainerChanged;
+import net.runelite.api.gameval.InventoryID;
+import net.runelite.api.vars.AccountType;
+import net.runelite.client.callback.ClientThread;
+import net.runelite.client.events.PlayerLootReceived;
+import net.runelite.client.game.ItemManager;
+import net.runelite.client.game.ItemStack;
+import net.runelite.client.game.SpriteManager;
+import net.runelite.client.ui.ClientToolbar;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.swing.SwingUtilities;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Guards the per-call allocations of the capture path and the panel, so fights don't turn into garbage
+ * collection pressure. Every budget covers a single call, the mocks' own bookkeeping included.
+ * <p>
+ * Budgets are fixed ceilings well above what each path is expected to allocate, a measured path without
+ * a budget fails. Run {@code gradle test -PrecordAllocationBaseline} to have the measured bytes reported in
+ * {@code build/allocation-baseline.properties} as well, for instance to tighten a budget.
+ */
+public class OsrsKillboardAllocationTest
+{
+	// Set by the build when the measured allocations are to be reported as well
+	private static final String BASELINE_OUTPUT_PROPERTY = "osrskillboard.allocationBaseline";
+	// Bytes per call, each kill and loot key opening on a new tick so none is deduplicated
+	private static final Map<String, Long> BUDGETS = Map.of(
+		"onPlayerLootReceived", 64 * 1024L,
+		"onItemContainerChanged.inventory", 256L,
+		"onItemContainerChanged.lootKey", 64 * 1024L,
+		"OsrsKillboardPanel.add", 1024L,
+		// Also builds or combines a loot box of Swing components
+		"OsrsKillboardPanel.add.built", 128 * 1024L);
+
+	private static final int WARMUP_CALLS = 2_000;
+	private static final int MEASURED_CALLS = 5_000;
+	// Stays below the records kept in memory, spilling is measured by neither
+	private static final int PANEL_WARMUP_CALLS = 200;
+	private static final int PANEL_MEASURED_CALLS = 600;
+	private static final int WARMUP_STARTUPS = 20;
+	private static final int MEASURED_STARTUPS = 50;
+
+	private static final Map<Class<?>, Object> DEFAULT_VALUES = Map.of(
+		boolean.class, false,
+		byte.class, (byte) 0,
+		short.class, (short) 0,
+		char.class, (char) 0,
+		int.class, 0,
+		long.class, 0L,
+		float.class, 0f,
+		double.class, 0d);
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+	private final OsrsKillboardPlugin plugin = new OsrsKillboardPlugin();
+	private int tick;
+	private ItemManager itemManager;
+	private OsrsKillboardConfig config;
+	private File spillDir;
+	// What the loot key tabs and the inventory hold, swapped per test
+	private ItemContainer lootKeyTab;
+	private ItemContainer inventory;
+
+	interface Call
+	{
+		void run() throws Exception;
+	}
+
+	@Before
+	public void before() throws Exception
+	{
+		Assume.assumeTrue(threads().isThreadAllocatedMemorySupported());
+		threads().setThreadAllocatedMemoryEnabled(true);
+
+		final PlayerComposition composition = stub(PlayerComposition.class, Map.of(
+			"getEquipmentId", (Supplier<Object>) () -> 4151));
+		final WorldView worldView = stub(WorldView.class, Map.of(
+			"getMapRegions", new int[]{12344},
+			"isInstance", false));
+		final Player pker = player("Pker", composition);
+		final Client client = stub(Client.class, Map.of(
+			"getLocalPlayer", pker,
+			"getTopLevelWorldView", worldView,
+			"getWorld", 318,
+			"getTickCount", (Supplier<Object>) () -> tick,
+			"getWorldType", EnumSet.of(WorldType.MEMBERS, WorldType.PVP),
+			"getAccountType", AccountType.NORMAL,
+			"getRealSkillLevel", 99,
+			"getItemContainer", (Function<Object[], Object>) args -> itemContainer((int) args[0])));
+
+		final ItemComposition itemComposition = stub(ItemComposition.class, Map.of(
+			"getName", "Coins",
+			"getNote", -1,
+			"getLinkedNoteId", -1));
+		itemManager = mock(ItemManager.class, withSettings().stubOnly());
+		when(itemManager.getItemComposition(anyInt())).thenReturn(itemComposition);
+		when(itemManager.getItemPrice(anyInt())).thenReturn(1);
+
+		config = stub(OsrsKillboardConfig.class, Map.of(
+			"lootBoxLimit", 50,
+			"iconCacheSize", 100,
+			"apiEndpoint", OsrsKillboardClient.DEFAULT_API_BASE));
+
+		final OsrsKillboardClient killboardClient = mock(OsrsKillboardClient.class, withSettings().stubOnly());
+		when(killboardClient.getCircuitBreaker()).thenReturn(new OsrsKillboardCircuitBreaker());
+		when(killboardClient.getMetrics()).thenReturn(new OsrsKillboardSubmissionMetrics());
+
+		Guice.createInjector(binder ->
+		{
+			binder.bind(Client.class).toInstance(client);
+			binder.bind(OsrsKillboardConfig.class).toInstance(config);
+			binder.bind(ClientToolbar.class).toInstance(mock(ClientToolbar.class, withSettings().stubOnly()));
+			binder.bind(ItemManager.class).toInstance(itemManager);
+			binder.bind(SpriteManager.class).toInstance(mock(SpriteManager.class, withSettings().stubOnly()));
+			binder.bind(ClientThread.class).toInstance(mock(ClientThread.class, withSettings().stubOnly()));
+			binder.bind(ScheduledExecutorService.class).toInstance(executor);
+			binder.bind(OsrsKillboardClient.class).toInstance(killboardClient);
+			binder.bind(OsrsKillboardHistorySync.class).toInstance(mock(OsrsKillboardHistorySync.class, withSettings().stubOnly()));
+		}).injectMembers(plugin);
+
+		// Keeps the spill file out of the user's RuneLite directory
+		spillDir = temporaryFolder.newFolder("spill");
+		plugin.setSpillDir(spillDir);
+		plugin.startUp();
+	}
+
+	@After
+	public void after() throws Exception
+	{
+		plugin.shutDown();
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void killStaysWithinBudget() throws Exception
+	{
+		final Player victim = player("Victim", stub(PlayerComposition.class, Map.of(
+			"getEquipmentId", (Supplier<Object>) () -> 11840)));
+		// The same item twice, stacked into one entry
+		final PlayerLootReceived event = new PlayerLootReceived(victim,
+			Arrays.asList(new ItemStack(995, 10_000), new ItemStack(995, 2_500)));
+
+		// Every kill is on a new tick, so none is suppressed as a duplicate
+		assertWithinBudget("onPlayerLootReceived", () ->
+		{
+			tick++;
+			plugin.onPlayerLootReceived(event);
+		});
+	}
+
+	@Test
+	public void inventoryChangeStaysWithinBudget() throws Exception
+	{
+		inventory = stub(ItemContainer.class, Map.of("count", 28));
+		final ItemContainerChanged event = new ItemContainerChanged(InventoryID.INV, inventory);
+
+		assertWithinBudget("onItemContainerChanged.inventory", () -> plugin.onItemContainerChanged(event));
+	}
+
+	@Test
+	public void lootKeyOpeningStaysWithinBudget() throws Exception
+	{
+		lootKeyTab = stub(ItemContainer.class, Map.of(
+			"getItems", new Item[]{new Item(995, 150_000), new Item(4151, 1), new Item(995, 50_000)},
+			"count", 3));
+		// No keys left afterwards, so the next opening is recorded again
+		inventory = stub(ItemContainer.class, Map.of("count", 27));
+		final ItemContainerChanged opened = new ItemContainerChanged(InventoryID.DEADMAN_LOOT_INV0, lootKeyTab);
+		final ItemContainerChanged keysGone = new ItemContainerChanged(InventoryID.INV, inventory);
+
+		// Every opening is on a new tick, so none is suppressed as a duplicate
+		assertWithinBudget("onItemContainerChanged.lootKey", () ->
+		{
+			tick++;
+			plugin.onItemContainerChanged(opened);
+			plugin.onItemContainerChanged(keysGone);
+		});
+	}
+
+	@Test
+	public void startUpDefersBuildingThePanel() throws Exception
+	{
+		// Building the panel as well is what startUp did before the panel was built on first open. Compared
+		// by the bytes allocated rather than wall time, which varies with the machine and its load.
+		final long lazy = measureStartUp(false);
+		final long eager = measureStartUp(true);
+		report("startUp", lazy);
+		report("startUp.built", eager);
+		assertTrue("startUp allocated " + lazy + " bytes, " + eager + " bytes with the panel built",
+			lazy < eager);
+	}
+
+	@Test
+	public void panelAddStaysWithinBudget() throws Exception
+	{
+		final OsrsKillboardPanel panel = new OsrsKillboardPanel(plugin, itemManager, config, spillDir);
+		try
+		{
+			checkBudget("OsrsKillboardPanel.add", measurePanelAdd(panel));
+		}
+		finally
+		{
+			panel.close();
+		}
+	}
+
+	@Test
+	public void builtPanelAddStaysWithinBudget() throws Exception
+	{
+		final OsrsKillboardPanel panel = new OsrsKillboardPanel(plugin, itemManager, config, spillDir);
+		try
+		{
+			// Once opened every kill also builds or combines a loot box, which happens on the EDT
+			final long bytes = onEdt(() ->
+			{
+				panel.onActivate();
+				return measurePanelAdd(panel);
+			});
+			checkBudget("OsrsKillboardPanel.add.built", bytes);
+		}
+		finally
+		{
+			panel.close();
+		}
+	}
+
+	/**
+	 * Restarts the plugin on the EDT, where RuneLite starts plugins and the panel is built.
+	 *
+	 * @return the bytes allocated on the EDT per restart
+	 */
+	private long measureStartUp(boolean buildPanel) throws Exception
+	{
+		final Call restart = () ->
+		{
+			plugin.shutDown();
+			plugin.startUp();
+			if (buildPanel)
+			{
+				plugin.getPanel().onActivate();
+			}
+		};
+		return onEdt(() ->
+		{
+			measure(restart, WARMUP_STARTUPS);
+			return measure(restart, MEASURED_STARTUPS);
+		});
+	}
+
+	private static long measurePanelAdd(OsrsKillboardPanel panel) throws Exception
+	{
+		final OsrsKillboardItem[] items = {new OsrsKillboardItem(995, "Coins", 12_500, 12_500)};
+		final Call add = () -> panel.add("Victim", 126, items, "kill-1");
+
+		measure(add, PANEL_WARMUP_CALLS);
+		return measure(add, PANEL_MEASURED_CALLS);
+	}
+
+	private static void assertWithinBudget(String name, Call call) throws Exception
+	{
+		measure(call, WARMUP_CALLS);
+		checkBudget(name, measure(call, MEASURED_CALLS));
+	}
+
+	/**
+	 * Checks the measured bytes per call against the budget of the path, reporting them first when a
+	 * baseline is being recorded.
+	 */
+	private static void checkBudget(String name, long bytes) throws IOException
+	{
+		report(name, bytes);
+		final Long budget = BUDGETS.get(name);
+		assertNotNull("No allocation budget for " + name, budget);
+		assertTrue(name + " allocated " + bytes + " bytes per call, budget is " + budget, bytes <= budget);
+	}
+
+	private static void report(String name, long bytes) throws IOException
+	{
+		final String output = System.getProperty(BASELINE_OUTPUT_PROPERTY);
+		if (output != null)
+		{
+			record(new File(output), name, bytes);
+		}
+	}
+
+	private static synchronized void record(File file, String name, long bytes) throws IOException
+	{
+		final Properties baseline = new Properties();
+		if (file.exists())
+		{
+			try (InputStream in = new FileInputStream(file))
+			{
+				baseline.load(in);
+			}
+		}
+
+		baseline.setProperty(name, Long.toString(bytes));
+		file.getParentFile().mkdirs();
+		try (OutputStream out = new FileOutputStream(file))
+		{
+			baseline.store(out, "Bytes allocated per call, measured by OsrsKillboardAllocationTest");
+		}
+	}
+
+	private static <T> T onEdt(Callable<T> callable) throws Exception
+	{
+		final FutureTask<T> task = new FutureTask<>(callable);
+		SwingUtilities.invokeAndWait(task);
+		try
+		{
+			return task.get();
+		}
+		catch (ExecutionException e)
+		{
+			throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+		}
+	}
+
+	private ItemContainer itemContainer(int containerId)
+	{
+		if (containerId == InventoryID.DEADMAN_LOOT_INV0)
+		{
+			return lootKeyTab;
+		}
+		return containerId == InventoryID.INV ? inventory : null;
+	}
+
+	/**
+	 * @return the bytes allocated by this thread per call
+	 */
+	private static long measure(Call call, int calls) throws Exception
+	{
+		final com.sun.management.ThreadMXBean threads = threads();
+		final long thread = Thread.currentThread().getId();
+		final long before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < calls; i++)
+		{
+			call.run();
+		}
+		return (threads.getThreadAllocatedBytes(thread) - before) / calls;
+	}
+
+	private static com.sun.management.ThreadMXBean threads()
+	{
+		return (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+	}
+
+	private static Player player(String name, PlayerComposition composition)
+	{
+		return stub(Player.class, Map.of(
+			"getName", name,
+			"getCombatLevel", 126,
+			"getPlayerComposition", composition,
+			"getLocalLocation", new LocalPoint(6464, 6464, -1),
+			"getWorldLocation", new WorldPoint(3093, 3523, 0),
+			"getSkullIcon", -1));
+	}
+
+	/**
+	 * Implements an interface with fixed answers by method name, a {@link Supplier} is asked on every call
+	 * and a {@link Function} is given the call's arguments.
+	 * Unanswered methods return zero, false or null. Cheaper per call than a mock, so it barely shows in
+	 * the measured allocations.
+	 */
+	private static <T> T stub(Class<T> type, Map<String, Object> answers)
+	{
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) ->
+		{
+			if (method.getDeclaringClass() == Object.class)
+			{
+				return objectMethod(proxy, method, args, type);
+			}
+
+			final Object answer = answers.get(method.getName());
+			if (answer instanceof Supplier)
+			{
+				return ((Supplier<?>) answer).get();
+			}
+			if (answer instanceof Function)
+			{
+				@SuppressWarnings("unchecked")
+				final Function<Object[], Object> function = (Function<Object[], Object>) answer;
+				return function.apply(args);
+			}
+			return answer != null ? answer : DEFAULT_VALUES.get(method.getReturnType());
+		}));
+	}
+
+	private static Object objectMethod(Object proxy, Method method, Object[] args, Class<?> type)
+	{
+		switch (method.getName())
+		{
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			default:
+				return type.getSimpleName() + " stub";
+		}
+	}
+}
@@ -0,0 +1,396 @@
+package com.osrskillboard;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import net.runelite.api.ItemContainer;
+import net.runelite.api.WorldType;
+import net.runelite.api.events.ItemContainerChanged;
+import net.runelite.api.gameval.InventoryID;
+import net.runelite.api.vars.AccountType;
+import net.runelite.client.events.PlayerLootReceived;
+import net.runelite.client.game.ItemStack;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Round trips the payloads the plugin builds for kills and loot key openings through the binary encoding.
+ * <p>
+ * Run {@code gradle test -PcodecBenchmark} to have the encode times of a kill reported in
+ * {@code build/codec-benchmark.properties}, next to those of its JSON form. They are not asserted.
+ */
+public class OsrsKillboardBinaryCodecTest
+{
+	// Set by the build when the encode times are to be measured and reported
+	private static final String BENCHMARK_OUTPUT_PROPERTY = "osrskillboard.codecBenchmark";
+	private static final int BENCHMARK_ITERATIONS = 20_000;
+	private static final String PROFILE_ID = "5f2b9c0e-profile";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private OsrsKillboardPluginHarness harness;
+
+	@Before
+	public void before() throws IOException
+	{
+		harness = new OsrsKillboardPluginHarness(folder.newFolder("spill"));
+		harness.start();
+	}
+
+	@After
+	public void after()
+	{
+		harness.stop();
+	}
+
+	@Test
+	public void roundTripsKillWithInlineProfile() throws Exception
+	{
+		assertRoundTrip(OsrsKillboardClient.buildPayload(kill(), null));
+	}
+
+	@Test
+	public void roundTripsKillWithProfileReference() throws Exception
+	{
+		assertRoundTrip(OsrsKillboardClient.buildPayload(kill(), PROFILE_ID));
+	}
+
+	@Test
+	public void roundTripsLootKeyOpening()
+	{
+		when(harness.client.getAccountType()).thenReturn(AccountType.IRONMAN);
+		// Worth more than an int holds
+		final ItemContainer tab = harness.setContainer(InventoryID.DEADMAN_LOOT_INV0,
+			995, Integer.MAX_VALUE, 4151, 1);
+		harness.plugin.onItemContainerChanged(new ItemContainerChanged(InventoryID.DEADMAN_LOOT_INV0, tab));
+
+		final ArgumentCaptor<JsonObject> key = ArgumentCaptor.forClass(JsonObject.class);
+		verify(harness.killboardClient).submitKeyLoot(key.capture(), any(), any());
+		assertTrue(key.getValue().get("lootValue").getAsLong() > Integer.MAX_VALUE);
+		assertRoundTrip(key.getValue());
+	}
+
+	@Test
+	public void carriesUnknownFieldsAndEnumNames() throws Exception
+	{
+		final JsonObject kill = OsrsKillboardClient.buildPayload(kill(), null);
+		kill.addProperty("worldType", "[MEMBERS, SOME_NEW_TYPE]");
+		kill.addProperty("pkerAccountType", "SOME_NEW_ACCOUNT");
+		final JsonObject extra = new JsonObject();
+		extra.addProperty("wildernessLevel", 31);
+		kill.add("extra", extra);
+
+		assertRoundTrip(kill);
+	}
+
+	@Test
+	public void roundTripsEmptyWorldTypesAndLoot() throws Exception
+	{
+		when(harness.client.getWorldType()).thenReturn(EnumSet.noneOf(WorldType.class));
+		final JsonObject kill = OsrsKillboardClient.buildPayload(kill(Collections.emptyList()), PROFILE_ID);
+		assertEquals("[]", kill.get("worldType").getAsString());
+		assertEquals(0, kill.getAsJsonArray("loot").size());
+
+		assertRoundTrip(kill);
+	}
+
+	@Test
+	public void encodesSmallerThanJson() throws Exception
+	{
+		final JsonObject kill = OsrsKillboardClient.buildPayload(kill(), PROFILE_ID);
+
+		final int jsonSize = kill.toString().getBytes(StandardCharsets.UTF_8).length;
+		final int binarySize = OsrsKillboardBinaryCodec.encode(kill).length;
+		assertTrue("binary " + binarySize + " bytes, JSON " + jsonSize + " bytes", binarySize * 2 < jsonSize);
+	}
+
+	/**
+	 * Measures how long a kill takes to encode in either form. Only run when asked for, and only reported,
+	 * as the times depend on the machine.
+	 */
+	@Test
+	public void reportsEncodeTimes() throws Exception
+	{
+		final String output = System.getProperty(BENCHMARK_OUTPUT_PROPERTY);
+		Assume.assumeTrue("Encode times are only measured with -PcodecBenchmark", output != null);
+		final JsonObject kill = OsrsKillboardClient.buildPayload(kill(), PROFILE_ID);
+
+		long sink = 0;
+		for (int i = 0; i < BENCHMARK_ITERATIONS; i++)
+		{
+			sink += kill.toString().getBytes(StandardCharsets.UTF_8).length;
+			sink += OsrsKillboardBinaryCodec.encode(kill).length;
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < BENCHMARK_ITERATIONS; i++)
+		{
+			sink += kill.toString().getBytes(StandardCharsets.UTF_8).length;
+		}
+		final long jsonNanos = (System.nanoTime() - start) / BENCHMARK_ITERATIONS;
+
+		start = System.nanoTime();
+		for (int i = 0; i < BENCHMARK_ITERATIONS; i++)
+		{
+			sink += OsrsKillboardBinaryCodec.encode(kill).length;
+		}
+		final long binaryNanos = (System.nanoTime() - start) / BENCHMARK_ITERATIONS;
+
+		final Properties report = new Properties();
+		report.setProperty("kill.json.bytes", Integer.toString(kill.toString().getBytes(StandardCharsets.UTF_8).length));
+		report.setProperty("kill.json.nanos", Long.toString(jsonNanos));
+		report.setProperty("kill.binary.bytes", Integer.toString(OsrsKillboardBinaryCodec.encode(kill).length));
+		report.setProperty("kill.binary.nanos", Long.toString(binaryNanos));
+		final File file = new File(output);
+		file.getParentFile().mkdirs();
+		try (OutputStream out = new FileOutputStream(file))
+		{
+			// The sink keeps the measured loops from being optimized away
+			report.store(out, "Kill encode times per call, measured by OsrsKillboardBinaryCodecTest (" + sink + ")");
+		}
+	}
+
+	private OsrsKillboardSubmission kill() throws IOException
+	{
+		return kill(Arrays.asList(new ItemStack(995, 250_000), new ItemStack(11802, 1), new ItemStack(385, 4)));
+	}
+
+	/**
+	 * A kill as the plugin submits it, the pker profile kept apart for the client to send inline or refer to.
+	 */
+	private OsrsKillboardSubmission kill(List<ItemStack> loot) throws IOException
+	{
+		harness.nextTick();
+		harness.plugin.onPlayerLootReceived(new PlayerLootReceived(
+			OsrsKillboardPluginHarness.player("Victim", 98, 0, 4587), loot));
+
+		final ArgumentCaptor<JsonObject> kill = ArgumentCaptor.forClass(JsonObject.class);
+		final ArgumentCaptor<JsonObject> profile = ArgumentCaptor.forClass(JsonObject.class);
+		verify(harness.killboardClient, atLeastOnce()).submitPk(kill.capture(), profile.capture(), any(), anyString(), anyInt(), any());
+		return new OsrsKillboardSubmission("pks", kill.getValue(), profile.getValue(), "Kill of Victim", "Victim", 98,
+			new OsrsKillboardItem[0], null, null);
+	}
+
+	private static void assertRoundTrip(JsonObject payload)
+	{
+		final JsonObject decoded = decode(OsrsKillboardBinaryCodec.encode(payload));
+		assertEquals(withoutItemNames(payload), decoded);
+	}
+
+	/**
+	 * The payload as the encoding keeps it: the same, apart from item names.
+	 */
+	private static JsonObject withoutItemNames(JsonObject payload)
+	{
+		final JsonObject expected = payload.deepCopy();
+		for (Map.Entry<String, JsonElement> entry : expected.entrySet())
+		{
+			switch (entry.getKey())
+			{
+				case "loot":
+					entry.getValue().getAsJsonArray().forEach(item -> item.getAsJsonObject().remove("name"));
+					break;
+				case "pkerItemsEquipped":
+				case "victimItemsEquipped":
+					entry.getValue().getAsJsonObject().entrySet().forEach(slot -> slot.getValue().getAsJsonObject().remove("name"));
+					break;
+			}
+		}
+		return expected;
+	}
+
+	/**
+	 * Decodes a payload back into its JSON form, as the server does. Item names are not part of the
+	 * encoding and are left out.
+	 */
+	private static JsonObject decode(byte[] data)
+	{
+		final Reader in = new Reader(data);
+		if (in.read() != OsrsKillboardBinaryCodec.MAGIC_0 || in.read() != OsrsKillboardBinaryCodec.MAGIC_1)
+		{
+			throw new IllegalArgumentException("Not a killboard payload");
+		}
+
+		final int version = in.readVarInt();
+		if (version != OsrsKillboardBinaryCodec.VERSION)
+		{
+			throw new IllegalArgumentException("Unsupported payload version " + version);
+		}
+
+		final JsonObject payload = new JsonObject();
+		for (int tag = in.readVarInt(); tag != OsrsKillboardBinaryCodec.TAG_END; tag = in.readVarInt())
+		{
+			if (tag == OsrsKillboardBinaryCodec.TAG_UNKNOWN)
+			{
+				final String name = in.readString();
+				payload.add(name, new JsonParser().parse(in.readString()));
+				continue;
+			}
+
+			final String name = OsrsKillboardBinaryCodec.FIELDS.get(tag);
+			switch (name)
+			{
+				case "time":
+					final Instant time = Instant.ofEpochSecond(in.readVarLong(), in.readVarLong());
+					payload.addProperty(name, DateTimeFormatter.ISO_INSTANT.format(time));
+					break;
+				case "world":
+				case "pkerCombatLevel":
+				case "victimCombatLevel":
+					payload.addProperty(name, (int) in.readVarLong());
+					break;
+				case "lootValue":
+					payload.addProperty(name, in.readVarLong());
+					break;
+				case "worldType":
+					final StringBuilder worldTypes = new StringBuilder("[");
+					for (int i = in.readVarInt(); i > 0; i--)
+					{
+						worldTypes.append(in.readInterned(OsrsKillboardBinaryCodec.WORLD_TYPES));
+						if (i > 1)
+						{
+							worldTypes.append(", ");
+						}
+					}
+					payload.addProperty(name, worldTypes.append(']').toString());
+					break;
+				case "pkerAccountType":
+					payload.addProperty(name, in.readInterned(OsrsKillboardBinaryCodec.ACCOUNT_TYPES));
+					break;
+				case "pkerIsSkulled":
+				case "victimIsSkulled":
+				case "victimIsFriend":
+				case "victimIsClanMember":
+					payload.addProperty(name, in.read() != 0);
+					break;
+				case "pkerItemsEquipped":
+				case "victimItemsEquipped":
+					final JsonObject equipment = new JsonObject();
+					for (String slot : OsrsKillboardBinaryCodec.EQUIPMENT_SLOTS)
+					{
+						final JsonObject item = new JsonObject();
+						item.addProperty("id", (int) in.readVarLong());
+						item.addProperty("qty", 1);
+						item.addProperty("price", in.readVarLong());
+						equipment.add(slot, item);
+					}
+					payload.add(name, equipment);
+					break;
+				case "pkerCombatStats":
+					final JsonObject stats = new JsonObject();
+					for (String stat : OsrsKillboardBinaryCodec.COMBAT_STATS)
+					{
+						stats.addProperty(stat, (int) in.readVarLong());
+					}
+					payload.add(name, stats);
+					break;
+				case "loot":
+					final JsonArray loot = new JsonArray();
+					for (int i = in.readVarInt(); i > 0; i--)
+					{
+						final JsonObject item = new JsonObject();
+						item.addProperty("id", (int) in.readVarLong());
+						item.addProperty("qty", (int) in.readVarLong());
+						item.addProperty("price", in.readVarLong());
+						loot.add(item);
+					}
+					payload.add(name, loot);
+					break;
+				default:
+					payload.addProperty(name, in.readString());
+					break;
+			}
+		}
+
+		assertEquals("trailing bytes", data.length, in.position);
+		return payload;
+	}
+
+	private static final class Reader
+	{
+		private final byte[] data;
+		private int position;
+
+		private Reader(byte[] data)
+		{
+			this.data = data;
+		}
+
+		int read()
+		{
+			return data[position++] & 0xFF;
+		}
+
+		int readVarInt()
+		{
+			int value = 0;
+			for (int shift = 0; ; shift += 7)
+			{
+				final int b = read();
+				value |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0)
+				{
+					return value;
+				}
+			}
+		}
+
+		long readVarLong()
+		{
+			long zigzag = 0;
+			for (int shift = 0; ; shift += 7)
+			{
+				final int b = read();
+				zigzag |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0)
+				{
+					return (zigzag >>> 1) ^ -(zigzag & 1);
+				}
+			}
+		}
+
+		String readString()
+		{
+			final int length = readVarInt();
+			final String value = new String(data, position, length, StandardCharsets.UTF_8);
+			position += length;
+			return value;
+		}
+
+		String readInterned(List<String> table)
+		{
+			final int index = readVarInt();
+			return index == 0 ? readString() : table.get(index - 1);
+		}
+	}
+}
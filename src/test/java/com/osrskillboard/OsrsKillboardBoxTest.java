@@ -0,0 +1,51 @@
+package com.osrskillboard;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class OsrsKillboardBoxTest
+{
+	@Test
+	public void totalsStackItemsInsteadOfKeepingRecords()
+	{
+		final OsrsKillboardBox.Totals totals = new OsrsKillboardBox.Totals();
+		OsrsKillboardRecord last = null;
+		for (int i = 0; i < 10_000; i++)
+		{
+			last = record(i, new OsrsKillboardItem(995, "Coins", 1_000, 1_000), new OsrsKillboardItem(4151, "Abyssal whip", 1, 2_000_000));
+			totals.add(last);
+		}
+
+		final List<OsrsKillboardItem> items = totals.items();
+		assertEquals(2, items.size());
+		assertEquals(10_000_000, items.get(0).getQuantity());
+		assertEquals(10_000, items.get(1).getQuantity());
+		assertEquals(10_000, totals.getKills());
+		assertEquals(10_000L * 2_001_000, totals.getKillValue());
+		assertEquals(10_000L * 2_001_000, totals.getCurrentValue());
+		assertSame(last, totals.getLatest());
+	}
+
+	@Test
+	public void repricesStackedItems()
+	{
+		final OsrsKillboardBox.Totals totals = new OsrsKillboardBox.Totals();
+		totals.add(record(1, new OsrsKillboardItem(4151, "Abyssal whip", 1, 2_000_000)));
+		totals.add(record(2, new OsrsKillboardItem(4151, "Abyssal whip", 1, 2_000_000), new OsrsKillboardItem(995, "Coins", 500, 500)));
+
+		// Coins have no new price and keep their value at kill
+		totals.reprice(new OsrsKillboardPriceSnapshot(1, Map.of(4151, 1_500_000L)));
+		assertEquals(3_000_500, totals.getCurrentValue());
+		assertEquals(4_000_500, totals.getKillValue());
+	}
+
+	private static OsrsKillboardRecord record(long timestamp, OsrsKillboardItem... items)
+	{
+		return new OsrsKillboardRecord("PvP Loot Chest", "", items, timestamp, "", 0);
+	}
+}
@@ -0,0 +1,109 @@
+package com.osrskillboard;
+
+import net.runelite.api.ItemContainer;
+import net.runelite.api.events.ItemContainerChanged;
+import net.runelite.api.gameval.InventoryID;
+import net.runelite.api.gameval.ItemID;
+import net.runelite.client.events.PlayerLootReceived;
+import net.runelite.client.game.ItemStack;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Replays game events through the plugin's handlers and checks what reaches the killboard client.
+ */
+public class OsrsKillboardCaptureTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private OsrsKillboardPluginHarness harness;
+
+	@Before
+	public void before() throws IOException
+	{
+		harness = new OsrsKillboardPluginHarness(folder.newFolder("spill"));
+		harness.start();
+	}
+
+	@After
+	public void after()
+	{
+		harness.stop();
+	}
+
+	@Test
+	public void submitsKillFiredTwiceOnOneTickOnce() throws Exception
+	{
+		harness.plugin.onPlayerLootReceived(kill());
+		// An equal event for the same victim and loot, as if fired again
+		harness.plugin.onPlayerLootReceived(kill());
+
+		verify(harness.killboardClient, times(1)).submitPk(any(), any(), any(), eq("Victim"), anyInt(), any());
+		assertEquals(1, harness.metrics.getDuplicates());
+	}
+
+	@Test
+	public void submitsSameKillOnLaterTickAgain() throws Exception
+	{
+		harness.plugin.onPlayerLootReceived(kill());
+		harness.nextTick();
+		harness.plugin.onPlayerLootReceived(kill());
+
+		verify(harness.killboardClient, times(2)).submitPk(any(), any(), any(), eq("Victim"), anyInt(), any());
+		assertEquals(0, harness.metrics.getDuplicates());
+	}
+
+	@Test
+	public void submitsLootKeyOpeningFiredTwiceOnOneTickOnce()
+	{
+		final ItemContainer tab = harness.setContainer(InventoryID.DEADMAN_LOOT_INV0, 995, 150_000, 4151, 1);
+		final ItemContainerChanged opened = new ItemContainerChanged(InventoryID.DEADMAN_LOOT_INV0, tab);
+		final ItemContainer inventory = harness.setContainer(InventoryID.INV);
+		final ItemContainerChanged keysGone = new ItemContainerChanged(InventoryID.INV, inventory);
+
+		harness.plugin.onItemContainerChanged(opened);
+		// With no keys left the next opening is recorded again, unless it is the same one
+		harness.plugin.onItemContainerChanged(keysGone);
+		harness.plugin.onItemContainerChanged(opened);
+
+		verify(harness.killboardClient, times(1)).submitKeyLoot(any(), any(), any());
+		assertEquals(1, harness.metrics.getDuplicates());
+	}
+
+	@Test
+	public void ignoresLootKeyTabChangesWhileKeysAreHeld()
+	{
+		final ItemContainer tab = harness.setContainer(InventoryID.DEADMAN_LOOT_INV0, 995, 150_000);
+		final ItemContainerChanged opened = new ItemContainerChanged(InventoryID.DEADMAN_LOOT_INV0, tab);
+		final ItemContainer inventory = harness.setContainer(InventoryID.INV, ItemID.WILDY_LOOT_KEY0, 1);
+		final ItemContainerChanged keysLeft = new ItemContainerChanged(InventoryID.INV, inventory);
+
+		harness.plugin.onItemContainerChanged(opened);
+		harness.plugin.onItemContainerChanged(keysLeft);
+		harness.nextTick();
+		harness.plugin.onItemContainerChanged(opened);
+
+		verify(harness.killboardClient, times(1)).submitKeyLoot(any(), any(), any());
+		assertEquals(0, harness.metrics.getDuplicates());
+	}
+
+	private static PlayerLootReceived kill()
+	{
+		return new PlayerLootReceived(OsrsKillboardPluginHarness.player("Victim", 98, -1, 4587),
+			Arrays.asList(new ItemStack(995, 10_000), new ItemStack(4151, 1)));
+	}
+}
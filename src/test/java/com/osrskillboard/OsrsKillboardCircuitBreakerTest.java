@@ -0,0 +1,65 @@
+package com.osrskillboard;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OsrsKillboardCircuitBreakerTest
+{
+	// Lets the probe out as soon as the breaker opened
+	private final OsrsKillboardCircuitBreaker breaker = new OsrsKillboardCircuitBreaker(0);
+
+	@Test
+	public void refusesRequestsWhileOpen()
+	{
+		final OsrsKillboardCircuitBreaker breaker = new OsrsKillboardCircuitBreaker();
+		for (int i = 0; i < 4; i++)
+		{
+			assertTrue(breaker.tryAcquire());
+			breaker.onFailure();
+		}
+
+		assertEquals(OsrsKillboardCircuitBreaker.State.OPEN, breaker.getState());
+		assertFalse(breaker.tryAcquire());
+	}
+
+	@Test
+	public void letsOneProbeOutAndClosesWhenItSucceeds()
+	{
+		open();
+
+		assertTrue(breaker.tryAcquire());
+		assertEquals(OsrsKillboardCircuitBreaker.State.HALF_OPEN, breaker.getState());
+		assertFalse(breaker.tryAcquire());
+
+		breaker.onSuccess(0);
+		assertEquals(OsrsKillboardCircuitBreaker.State.CLOSED, breaker.getState());
+		assertTrue(breaker.tryAcquire());
+	}
+
+	@Test
+	public void releasesCancelledProbe()
+	{
+		open();
+		assertTrue(breaker.tryAcquire());
+		assertFalse(breaker.tryAcquire());
+
+		breaker.cancelProbe();
+
+		assertEquals(OsrsKillboardCircuitBreaker.State.HALF_OPEN, breaker.getState());
+		assertTrue(breaker.tryAcquire());
+		breaker.onFailure();
+		assertEquals(OsrsKillboardCircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	private void open()
+	{
+		for (int i = 0; i < 4; i++)
+		{
+			assertTrue(breaker.tryAcquire());
+			breaker.onFailure();
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package com.osrskillboard;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import net.runelite.client.chat.ChatMessageManager;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.awt.EventQueue;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+public class OsrsKillboardClientTest
+{
+	private static final int KILLS = 10;
+	private static final long SHUTDOWN_MILLIS = 2_000;
+	// A few polls of the shared store, long enough for a second send of anything already sent
+	private static final long QUIET_MILLIS = 3_000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Gson gson = new Gson();
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+	private final OsrsKillboardPanel panel = mock(OsrsKillboardPanel.class);
+	private OsrsKillboardConfig config;
+	private MockWebServer server;
+	private Injector injector;
+
+	@Before
+	public void before() throws IOException
+	{
+		final AtomicInteger ids = new AtomicInteger();
+		server = new MockWebServer();
+		server.setDispatcher(new Dispatcher()
+		{
+			@Override
+			public MockResponse dispatch(RecordedRequest request)
+			{
+				return new MockResponse().setBody("kill-id-" + ids.incrementAndGet());
+			}
+		});
+		server.start();
+
+		config = mock(OsrsKillboardConfig.class, withSettings().defaultAnswer(CALLS_REAL_METHODS));
+		doReturn(server.url("/").toString()).when(config).apiEndpoint();
+		doReturn(true).when(config).shareBetweenClients();
+
+		injector = Guice.createInjector(binder ->
+		{
+			binder.bind(OkHttpClient.class).toInstance(new OkHttpClient());
+			binder.bind(Gson.class).toInstance(gson);
+			binder.bind(OsrsKillboardConfig.class).toInstance(config);
+			binder.bind(ChatMessageManager.class).toInstance(mock(ChatMessageManager.class));
+			binder.bind(ScheduledExecutorService.class).toInstance(executor);
+		});
+	}
+
+	@After
+	public void after() throws IOException
+	{
+		executor.shutdownNow();
+		server.shutdown();
+	}
+
+	@Test(timeout = 60_000)
+	public void clientsSharingStoreSendEachKillOnce() throws Exception
+	{
+		final OsrsKillboardClient first = start();
+		final OsrsKillboardClient second = start();
+
+		for (int i = 0; i < KILLS; i++)
+		{
+			submit(i % 2 == 0 ? first : second, i);
+		}
+		assertEquals(kills(0, KILLS), received(KILLS));
+
+		// Whichever of them was sending, the other one sends from now on
+		first.shutDown(SHUTDOWN_MILLIS);
+		for (int i = KILLS; i < 2 * KILLS; i++)
+		{
+			submit(second, i);
+		}
+		assertEquals(kills(KILLS, 2 * KILLS), received(KILLS));
+
+		assertNull("Sent twice", server.takeRequest(QUIET_MILLIS, TimeUnit.MILLISECONDS));
+		second.shutDown(SHUTDOWN_MILLIS);
+	}
+
+	@Test(timeout = 60_000)
+	public void batchWindowHandsResultsToThePanelTogether() throws Exception
+	{
+		doReturn(false).when(config).shareBetweenClients();
+		// Far longer than the local server needs for the whole burst
+		doReturn(2_000).when(config).resultBatchWindow();
+		final Set<Object> panelUpdates = ConcurrentHashMap.newKeySet();
+		final CountDownLatch shown = new CountDownLatch(KILLS);
+		doAnswer(invocation ->
+		{
+			panelUpdates.add(EventQueue.getCurrentEvent());
+			shown.countDown();
+			return null;
+		}).when(panel).add(anyString(), anyInt(), any(), any());
+
+		final OsrsKillboardClient client = start();
+		for (int i = 0; i < KILLS; i++)
+		{
+			submit(client, i);
+		}
+
+		assertTrue(shown.await(10, TimeUnit.SECONDS));
+		assertEquals("EDT events updating the panel", 1, panelUpdates.size());
+		client.shutDown(SHUTDOWN_MILLIS);
+	}
+
+	private OsrsKillboardClient start()
+	{
+		final OsrsKillboardClient client = injector.getInstance(OsrsKillboardClient.class);
+		client.setDataDir(folder.getRoot());
+		client.start(panel);
+		return client;
+	}
+
+	private void submit(OsrsKillboardClient client, int kill)
+	{
+		final JsonObject killRecord = new JsonObject();
+		killRecord.addProperty("kill", kill);
+		client.submitPk(killRecord, null, panel, "Victim", 126, new OsrsKillboardItem[0]);
+	}
+
+	/**
+	 * Waits for the given number of kills to reach the server, failing on any kill sent twice.
+	 */
+	private Set<Integer> received(int count) throws InterruptedException
+	{
+		final Set<Integer> kills = new HashSet<>();
+		for (int i = 0; i < count; i++)
+		{
+			final RecordedRequest request = server.takeRequest(10, TimeUnit.SECONDS);
+			assertNotNull("Only " + i + " of " + count + " kills sent", request);
+			final int kill = gson.fromJson(request.getBody().readUtf8(), JsonObject.class).get("kill").getAsInt();
+			assertTrue("Kill " + kill + " sent twice", kills.add(kill));
+		}
+		return kills;
+	}
+
+	private static Set<Integer> kills(int from, int to)
+	{
+		final Set<Integer> kills = new HashSet<>();
+		for (int i = from; i < to; i++)
+		{
+			kills.add(i);
+		}
+		return kills;
+	}
+}
@@ -0,0 +1,105 @@
+package com.osrskillboard;
+
+import net.runelite.client.game.ItemStack;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OsrsKillboardDedupeCacheTest
+{
+	private static final long TTL_MILLIS = 10_000;
+
+	private final OsrsKillboardDedupeCache cache = new OsrsKillboardDedupeCache(TTL_MILLIS);
+
+	@Test
+	public void suppressesRepeatedKill()
+	{
+		final long key = OsrsKillboardDedupeCache.hash("Victim", 318, 1000, loot());
+
+		assertFalse(cache.checkAndAdd(key, 0));
+		assertTrue(cache.checkAndAdd(key, 1));
+		assertTrue(cache.checkAndAdd(OsrsKillboardDedupeCache.hash("Victim", 318, 1000, loot()), 2));
+	}
+
+	@Test
+	public void hashesLootInAnyOrderTheSame()
+	{
+		final List<ItemStack> reversed = new ArrayList<>(loot());
+		Collections.reverse(reversed);
+
+		assertEquals(OsrsKillboardDedupeCache.hash("Victim", 318, 1000, loot()),
+			OsrsKillboardDedupeCache.hash("Victim", 318, 1000, reversed));
+	}
+
+	@Test
+	public void tellsDifferentKillsApart()
+	{
+		final long key = OsrsKillboardDedupeCache.hash("Victim", 318, 1000, loot());
+
+		assertNotEquals(key, OsrsKillboardDedupeCache.hash("Victim", 318, 1001, loot()));
+		assertNotEquals(key, OsrsKillboardDedupeCache.hash("Victim", 319, 1000, loot()));
+		assertNotEquals(key, OsrsKillboardDedupeCache.hash("Other", 318, 1000, loot()));
+		assertNotEquals(key, OsrsKillboardDedupeCache.hash("Victim", 318, 1000,
+			Arrays.asList(new ItemStack(995, 10_001), new ItemStack(4151, 1))));
+		assertFalse(cache.checkAndAdd(key, 0));
+		assertFalse(cache.checkAndAdd(OsrsKillboardDedupeCache.hash("Victim", 318, 1001, loot()), 0));
+	}
+
+	@Test
+	public void forgetsKillsAfterTimeToLive()
+	{
+		final long key = OsrsKillboardDedupeCache.hash("Victim", 318, 1000, loot());
+
+		assertFalse(cache.checkAndAdd(key, 0));
+		assertTrue(cache.checkAndAdd(key, TTL_MILLIS - 1));
+		assertFalse(cache.checkAndAdd(key, TTL_MILLIS));
+		assertTrue(cache.checkAndAdd(key, TTL_MILLIS + 1));
+	}
+
+	@Test
+	public void evictsEntryClosestToExpiringWhenProbeWindowIsFull()
+	{
+		final long[] keys = keysStartingAtSameSlot(OsrsKillboardDedupeCache.PROBE_LENGTH + 1);
+		for (int i = 0; i < OsrsKillboardDedupeCache.PROBE_LENGTH; i++)
+		{
+			assertFalse(cache.checkAndAdd(keys[i], i));
+		}
+
+		// The window is full, the oldest entry makes room
+		final int now = OsrsKillboardDedupeCache.PROBE_LENGTH;
+		assertFalse(cache.checkAndAdd(keys[now], now));
+
+		for (int i = 1; i <= OsrsKillboardDedupeCache.PROBE_LENGTH; i++)
+		{
+			assertTrue("Key " + i + " should have been kept", cache.checkAndAdd(keys[i], now));
+		}
+		assertFalse("Oldest key should have been evicted", cache.checkAndAdd(keys[0], now));
+	}
+
+	private static List<ItemStack> loot()
+	{
+		return Arrays.asList(new ItemStack(4151, 1), new ItemStack(995, 10_000), new ItemStack(11840, 1));
+	}
+
+	private static long[] keysStartingAtSameSlot(int count)
+	{
+		final long[] keys = new long[count];
+		int found = 0;
+		for (long key = 1; found < count; key++)
+		{
+			if (((int) OsrsKillboardDedupeCache.mix(key) & (OsrsKillboardDedupeCache.CAPACITY - 1)) == 0)
+			{
+				keys[found++] = key;
+			}
+		}
+		return keys;
+	}
+}
@@ -0,0 +1,68 @@
+package com.osrskillboard;
+
+import com.google.gson.JsonObject;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Submissions and a plain sender for tests that run endpoints against a local server.
+ */
+final class OsrsKillboardEndpointFixtures
+{
+	private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+	private OsrsKillboardEndpointFixtures()
+	{
+	}
+
+	static OsrsKillboardSubmission submission(String victimName)
+	{
+		final JsonObject payload = new JsonObject();
+		payload.addProperty("victimName", victimName);
+		return new OsrsKillboardSubmission("pks", payload, null, "Kill of " + victimName, victimName, 126,
+			new OsrsKillboardItem[0], null, null);
+	}
+
+	/**
+	 * Posts the payload as JSON and counts down as submissions are sent or fail for good.
+	 */
+	static final class PostSender implements OsrsKillboardEndpoint.Sender
+	{
+		final CountDownLatch sent;
+		final CountDownLatch failed;
+
+		PostSender(int submissions)
+		{
+			this.sent = new CountDownLatch(submissions);
+			this.failed = new CountDownLatch(submissions);
+		}
+
+		@Override
+		public void send(OsrsKillboardEndpoint endpoint, OsrsKillboardSubmission submission) throws IOException
+		{
+			final Request request = new Request.Builder()
+				.url(endpoint.getBaseUrl().newBuilder().addPathSegment(submission.getPath()).build())
+				.post(RequestBody.create(JSON, submission.getPayload().toString()))
+				.build();
+			try (Response response = endpoint.execute(request))
+			{
+				if (!response.isSuccessful())
+				{
+					throw new IOException("HTTP " + response.code());
+				}
+			}
+			sent.countDown();
+		}
+
+		@Override
+		public void onFailed(OsrsKillboardSubmission submission, IOException e)
+		{
+			failed.countDown();
+		}
+	}
+}
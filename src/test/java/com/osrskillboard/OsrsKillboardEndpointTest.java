@@ -0,0 +1,167 @@
+package com.osrskillboard;
+
+import com.osrskillboard.OsrsKillboardEndpointFixtures.PostSender;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.osrskillboard.OsrsKillboardEndpointFixtures.submission;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OsrsKillboardEndpointTest
+{
+	private static final long SLOW_SECONDS = 3;
+
+	private final OkHttpClient httpClient = new OkHttpClient();
+	private final List<OsrsKillboardEndpoint> endpoints = new ArrayList<>();
+	private MockWebServer primaryServer;
+	private MockWebServer secondaryServer;
+
+	@Before
+	public void before() throws IOException
+	{
+		primaryServer = new MockWebServer();
+		primaryServer.start();
+		secondaryServer = new MockWebServer();
+		secondaryServer.start();
+	}
+
+	@After
+	public void after() throws IOException
+	{
+		final long deadline = System.nanoTime();
+		endpoints.forEach(e -> e.shutDown(deadline));
+		primaryServer.shutdown();
+		secondaryServer.shutdown();
+	}
+
+	@Test(timeout = 10_000)
+	public void slowSecondaryDoesNotHoldUpPrimary() throws Exception
+	{
+		primaryServer.enqueue(new MockResponse().setBody("kill-1"));
+		secondaryServer.enqueue(new MockResponse().setHeadersDelay(SLOW_SECONDS, TimeUnit.SECONDS));
+
+		final PostSender primarySender = new PostSender(1);
+		final PostSender secondarySender = new PostSender(1);
+		final OsrsKillboardEndpoint primary = endpoint("killboard", primaryServer, 0, primarySender);
+		final OsrsKillboardEndpoint secondary = endpoint("secondary", secondaryServer, 0, secondarySender);
+
+		final long start = System.nanoTime();
+		final OsrsKillboardSubmission submission = submission("Victim");
+		assertTrue(secondary.offer(submission));
+		assertTrue(primary.offer(submission));
+
+		assertTrue(primarySender.sent.await(SLOW_SECONDS, TimeUnit.SECONDS));
+		final long primaryMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertEquals("Secondary should still be waiting on its response", 1, secondarySender.sent.getCount());
+		assertTrue("Primary took " + primaryMillis + "ms", primaryMillis < TimeUnit.SECONDS.toMillis(SLOW_SECONDS) / 2);
+	}
+
+	@Test(timeout = 10_000)
+	public void retriesFailedSubmission() throws Exception
+	{
+		secondaryServer.enqueue(new MockResponse().setResponseCode(500));
+		secondaryServer.enqueue(new MockResponse());
+
+		final PostSender sender = new PostSender(1);
+		final OsrsKillboardEndpoint secondary = endpoint("secondary", secondaryServer, 1, sender);
+		assertTrue(secondary.offer(submission("Victim")));
+
+		assertTrue(sender.sent.await(5, TimeUnit.SECONDS));
+		settle(secondary);
+		assertEquals(2, secondaryServer.getRequestCount());
+		assertEquals(1, secondary.getMetrics().getSent());
+		assertEquals(0, secondary.getMetrics().getFailed());
+		assertEquals(1, sender.failed.getCount());
+	}
+
+	@Test(timeout = 10_000)
+	public void keepsMetricsPerEndpoint() throws Exception
+	{
+		primaryServer.enqueue(new MockResponse().setBody("kill-1"));
+		secondaryServer.enqueue(new MockResponse().setResponseCode(503));
+
+		final PostSender primarySender = new PostSender(1);
+		final PostSender secondarySender = new PostSender(1);
+		final OsrsKillboardEndpoint primary = endpoint("killboard", primaryServer, 0, primarySender);
+		final OsrsKillboardEndpoint secondary = endpoint("secondary", secondaryServer, 0, secondarySender);
+
+		final OsrsKillboardSubmission submission = submission("Victim");
+		assertTrue(primary.offer(submission));
+		assertTrue(secondary.offer(submission));
+		assertTrue(primarySender.sent.await(5, TimeUnit.SECONDS));
+		assertTrue(secondarySender.failed.await(5, TimeUnit.SECONDS));
+		settle(primary);
+		settle(secondary);
+
+		assertEquals(1, primary.getMetrics().getEnqueued());
+		assertEquals(1, primary.getMetrics().getSent());
+		assertEquals(0, primary.getMetrics().getFailed());
+		assertEquals(1, secondary.getMetrics().getEnqueued());
+		assertEquals(0, secondary.getMetrics().getSent());
+		assertEquals(1, secondary.getMetrics().getFailed());
+	}
+
+	@Test(timeout = 10_000)
+	public void failsSubmissionOfWorkerThatOutlivesShutdown() throws Exception
+	{
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch failed = new CountDownLatch(1);
+		final OsrsKillboardEndpoint endpoint = new OsrsKillboardEndpoint("stuck", primaryServer.url("/"), httpClient, 1, 0,
+			new OsrsKillboardCircuitBreaker(), new OsrsKillboardSubmissionMetrics(), new OsrsKillboardEndpoint.Sender()
+			{
+				@Override
+				public void send(OsrsKillboardEndpoint endpoint, OsrsKillboardSubmission submission) throws IOException
+				{
+					started.countDown();
+					// Ignores the interrupt of shutdown, like a call stuck outside OkHttp would
+					final long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+					while (System.nanoTime() < until)
+					{
+						Thread.onSpinWait();
+					}
+					throw new IOException("Too late");
+				}
+
+				@Override
+				public void onFailed(OsrsKillboardSubmission submission, IOException e)
+				{
+					failed.countDown();
+				}
+			});
+		endpoints.add(endpoint);
+
+		assertTrue(endpoint.offer(submission("Victim")));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		assertTrue(endpoint.shutDown(System.nanoTime()).isEmpty());
+		assertTrue("Submission was dropped", failed.await(5, TimeUnit.SECONDS));
+		assertEquals(1, endpoint.getMetrics().getFailed());
+	}
+
+	private OsrsKillboardEndpoint endpoint(String name, MockWebServer server, int maxRetries, PostSender sender)
+	{
+		final OsrsKillboardEndpoint endpoint = new OsrsKillboardEndpoint(name, server.url("/"), httpClient, 1, maxRetries,
+			new OsrsKillboardCircuitBreaker(), new OsrsKillboardSubmissionMetrics(), sender);
+		endpoints.add(endpoint);
+		return endpoint;
+	}
+
+	/**
+	 * Waits for the worker to finish with the submission, so its metrics are final.
+	 */
+	private static void settle(OsrsKillboardEndpoint endpoint)
+	{
+		assertTrue(endpoint.shutDown(System.nanoTime() + TimeUnit.SECONDS.toNanos(5)).isEmpty());
+	}
+}
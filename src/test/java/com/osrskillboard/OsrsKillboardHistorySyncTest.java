@@ -0,0 +1,138 @@
+package com.osrskillboard;
+
+import com.google.gson.Gson;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Syncs against a local stand-in for the OSRSKillboard.com API.
+ */
+public class OsrsKillboardHistorySyncTest
+{
+	private static final String KILL_TEMPLATE = "{\"id\":\"%s\",\"time\":\"%s\",\"victimName\":\"Victim\",\"victimCombatLevel\":126,"
+		+ "\"loot\":[{\"id\":995,\"name\":\"Coins\",\"qty\":1000,\"price\":1000}]}";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final BlockingQueue<List<OsrsKillboardRecord>> delivered = new LinkedBlockingQueue<>();
+	private MockWebServer server;
+	private OsrsKillboardHistorySync historySync;
+
+	@Before
+	public void before() throws IOException
+	{
+		server = new MockWebServer();
+		server.start();
+		historySync = new OsrsKillboardHistorySync(new OkHttpClient(), new Gson(), folder.getRoot());
+	}
+
+	@After
+	public void after() throws IOException
+	{
+		historySync.cancel();
+		server.shutdown();
+	}
+
+	@Test(timeout = 10_000)
+	public void fetchesEveryPageFromTheCursor() throws Exception
+	{
+		server.enqueue(page("cursor-1", true, kill("kill-1", "2026-01-01T10:00:00Z")));
+		server.enqueue(page("cursor-2", false, kill("kill-2", "2026-01-01T11:00:00Z")));
+
+		sync(Long.MAX_VALUE);
+
+		assertEquals(List.of(), killIds(next()));
+		assertEquals(Arrays.asList("kill-1", "kill-2"), killIds(next()));
+		assertEquals("/players/Pker/pks", server.takeRequest().getPath());
+		assertEquals("/players/Pker/pks?after=cursor-1", server.takeRequest().getPath());
+	}
+
+	@Test(timeout = 10_000)
+	public void asksConditionallyForKillsAfterTheCachedOnes() throws Exception
+	{
+		server.enqueue(page("cursor-1", false, kill("kill-1", "2026-01-01T10:00:00Z"))
+			.setHeader("ETag", "\"page-1\"")
+			.setHeader("Last-Modified", "Thu, 01 Jan 2026 10:00:00 GMT"));
+		sync(Long.MAX_VALUE);
+		next();
+		next();
+		server.takeRequest();
+
+		server.enqueue(new MockResponse().setResponseCode(304));
+		sync(Long.MAX_VALUE);
+
+		// Shown from the cache, nothing new comes after it
+		assertEquals(List.of("kill-1"), killIds(next()));
+		final RecordedRequest request = server.takeRequest();
+		assertEquals("/players/Pker/pks?after=cursor-1", request.getPath());
+		// The ETag belongs to /pks, not to the page after cursor-1
+		assertNull(request.getHeader("If-None-Match"));
+		assertEquals("Thu, 01 Jan 2026 10:00:00 GMT", request.getHeader("If-Modified-Since"));
+		assertNull(delivered.poll(500, TimeUnit.MILLISECONDS));
+	}
+
+	@Test(timeout = 10_000)
+	public void leavesOutKillsAlreadyInThePanel() throws Exception
+	{
+		server.enqueue(page(null, false,
+			kill("kill-1", "2026-01-01T10:00:00Z"),
+			kill("kill-2", "2026-01-01T11:00:00Z")));
+
+		sync(Instant.parse("2026-01-01T11:00:00Z").toEpochMilli());
+
+		next();
+		assertEquals(List.of("kill-1"), killIds(next()));
+	}
+
+	private void sync(long before)
+	{
+		historySync.sync(server.url("/"), "Pker", before, delivered::add);
+	}
+
+	private List<OsrsKillboardRecord> next() throws InterruptedException
+	{
+		final List<OsrsKillboardRecord> records = delivered.poll(5, TimeUnit.SECONDS);
+		assertNotNull(records);
+		return records;
+	}
+
+	private static MockResponse page(String cursor, boolean hasMore, String... kills)
+	{
+		final String cursorJson = cursor == null ? "null" : "\"" + cursor + "\"";
+		return new MockResponse().setBody("{\"kills\":[" + String.join(",", kills) + "],\"cursor\":" + cursorJson
+			+ ",\"hasMore\":" + hasMore + "}");
+	}
+
+	private static String kill(String id, String time)
+	{
+		return String.format(KILL_TEMPLATE, id, time);
+	}
+
+	private static List<String> killIds(List<OsrsKillboardRecord> records)
+	{
+		final List<String> ids = new ArrayList<>();
+		records.forEach(r -> ids.add(r.getOsrsKillboardKillId()));
+		return ids;
+	}
+}
@@ -0,0 +1,138 @@
+package com.osrskillboard;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OsrsKillboardLeaderboardTest
+{
+	@Test
+	public void evictsLeastValuableKillAtCapacity()
+	{
+		final OsrsKillboardLeaderboard leaderboard = new OsrsKillboardLeaderboard(3);
+		for (long value : new long[]{500, 100, 400, 200, 300, 600})
+		{
+			leaderboard.add(kill(value, new OsrsKillboardItem(995, "Coins", (int) value, value)));
+		}
+
+		assertEquals(Arrays.asList(600L, 500L, 400L), killValues(leaderboard.getTopKills()));
+	}
+
+	@Test
+	public void leavesOutRecordsWithoutLoot()
+	{
+		final OsrsKillboardLeaderboard leaderboard = new OsrsKillboardLeaderboard(3);
+		leaderboard.add(kill(0));
+		leaderboard.add(kill(100, new OsrsKillboardItem(995, "Coins", 100, 100)));
+
+		assertEquals(Arrays.asList(100L), killValues(leaderboard.getTopKills()));
+	}
+
+	@Test
+	public void keepsItemTotalsWhenGrowingPastTheInitialTable()
+	{
+		final OsrsKillboardLeaderboard leaderboard = new OsrsKillboardLeaderboard(5);
+		// Well past the initial table of 64 slots, which grows at half full
+		final int distinctItems = 300;
+		for (int id = 1; id <= distinctItems; id++)
+		{
+			leaderboard.add(kill(id, new OsrsKillboardItem(id, "Item " + id, 1, id)));
+		}
+		// Added again after growing, so these totals span both tables
+		for (int id = 1; id <= distinctItems; id += 50)
+		{
+			leaderboard.add(kill(1_000, new OsrsKillboardItem(id, "Item " + id, 2, 1_000)));
+		}
+
+		final List<OsrsKillboardItem> top = leaderboard.getTopItems();
+		assertEquals(Arrays.asList(251, 201, 151, 101, 51), top.stream().map(OsrsKillboardItem::getId).collect(Collectors.toList()));
+		assertEquals(1_251L, top.get(0).getGePrice());
+		assertEquals(3, top.get(0).getQuantity());
+		assertEquals("Item 251", top.get(0).getName());
+	}
+
+	@Test
+	public void matchesNaiveSortAfterClearAndRecompute()
+	{
+		final Random random = new Random(42);
+		final List<OsrsKillboardRecord> records = new ArrayList<>();
+		for (int i = 0; i < 500; i++)
+		{
+			final OsrsKillboardItem[] items = new OsrsKillboardItem[random.nextInt(4)];
+			for (int j = 0; j < items.length; j++)
+			{
+				final int id = random.nextInt(150);
+				final int quantity = 1 + random.nextInt(10);
+				items[j] = new OsrsKillboardItem(id, "Item " + id, quantity, (long) quantity * (1 + random.nextInt(100_000)));
+			}
+			records.add(kill(i, items));
+		}
+
+		final OsrsKillboardLeaderboard leaderboard = new OsrsKillboardLeaderboard(10);
+		records.subList(0, 100).forEach(leaderboard::add);
+		leaderboard.clear();
+		records.forEach(leaderboard::add);
+
+		final List<Long> naiveKills = records.stream()
+			.filter(r -> r.getItems().length > 0)
+			.map(OsrsKillboardRecord::getKillValue)
+			.sorted(Comparator.reverseOrder())
+			.limit(10)
+			.collect(Collectors.toList());
+		assertEquals(naiveKills, killValues(leaderboard.getTopKills()));
+
+		final Map<Integer, Long> itemTotals = new HashMap<>();
+		final Map<Integer, Long> itemQuantities = new HashMap<>();
+		for (OsrsKillboardRecord record : records)
+		{
+			for (OsrsKillboardItem item : record.getItems())
+			{
+				itemTotals.merge(item.getId(), item.getGePrice(), Long::sum);
+				itemQuantities.merge(item.getId(), (long) item.getQuantity(), Long::sum);
+			}
+		}
+		final List<Long> naiveItems = itemTotals.values().stream()
+			.sorted(Comparator.reverseOrder())
+			.limit(10)
+			.collect(Collectors.toList());
+
+		final List<OsrsKillboardItem> topItems = leaderboard.getTopItems();
+		assertEquals(naiveItems, topItems.stream().map(OsrsKillboardItem::getGePrice).collect(Collectors.toList()));
+		for (OsrsKillboardItem item : topItems)
+		{
+			assertEquals(itemTotals.get(item.getId()), Long.valueOf(item.getGePrice()));
+			assertEquals(itemQuantities.get(item.getId()), Long.valueOf(item.getQuantity()));
+		}
+	}
+
+	@Test
+	public void isEmptyAfterClear()
+	{
+		final OsrsKillboardLeaderboard leaderboard = new OsrsKillboardLeaderboard(3);
+		leaderboard.add(kill(100, new OsrsKillboardItem(995, "Coins", 100, 100)));
+		leaderboard.clear();
+
+		assertTrue(leaderboard.getTopKills().isEmpty());
+		assertTrue(leaderboard.getTopItems().isEmpty());
+	}
+
+	private static OsrsKillboardRecord kill(long timestamp, OsrsKillboardItem... items)
+	{
+		return new OsrsKillboardRecord("Victim", "(lvl-126)", items, timestamp, "kill-" + timestamp, 0);
+	}
+
+	private static List<Long> killValues(List<OsrsKillboardRecord> kills)
+	{
+		return kills.stream().map(OsrsKillboardRecord::getKillValue).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,168 @@
+package com.osrskillboard;
+
+import com.google.inject.Guice;
+import net.runelite.api.Client;
+import net.runelite.api.Item;
+import net.runelite.api.ItemComposition;
+import net.runelite.api.ItemContainer;
+import net.runelite.api.Player;
+import net.runelite.api.PlayerComposition;
+import net.runelite.api.WorldType;
+import net.runelite.api.WorldView;
+import net.runelite.api.coords.LocalPoint;
+import net.runelite.api.coords.WorldPoint;
+import net.runelite.api.kit.KitType;
+import net.runelite.api.vars.AccountType;
+import net.runelite.client.callback.ClientThread;
+import net.runelite.client.game.ItemManager;
+import net.runelite.client.game.SpriteManager;
+import net.runelite.client.ui.ClientToolbar;
+
+import java.io.File;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The plugin injected with a mocked RuneLite client and killboard client, so its event handlers can be
+ * driven as the game would and what they submit checked on the mock.
+ */
+final class OsrsKillboardPluginHarness
+{
+	static final int WORLD = 318;
+
+	final OsrsKillboardPlugin plugin = new OsrsKillboardPlugin();
+	final Client client = mock(Client.class);
+	final OsrsKillboardClient killboardClient = mock(OsrsKillboardClient.class);
+	final OsrsKillboardSubmissionMetrics metrics = new OsrsKillboardSubmissionMetrics();
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+	private final Map<Integer, ItemContainer> containers = new HashMap<>();
+	private int tick;
+
+	OsrsKillboardPluginHarness(File spillDir)
+	{
+		final WorldView worldView = mock(WorldView.class);
+		when(worldView.getMapRegions()).thenReturn(new int[]{12344});
+		when(client.getTopLevelWorldView()).thenReturn(worldView);
+		final Player pker = player("Pker", 126, -1, 4151);
+		when(client.getLocalPlayer()).thenReturn(pker);
+		when(client.getWorld()).thenReturn(WORLD);
+		when(client.getTickCount()).thenAnswer(invocation -> tick);
+		when(client.getWorldType()).thenReturn(EnumSet.of(WorldType.MEMBERS, WorldType.PVP));
+		when(client.getAccountType()).thenReturn(AccountType.NORMAL);
+		when(client.getRealSkillLevel(any())).thenReturn(99);
+		when(client.getItemContainer(anyInt())).thenAnswer(invocation -> containers.get(invocation.<Integer>getArgument(0)));
+
+		final ItemManager itemManager = mock(ItemManager.class);
+		when(itemManager.getItemComposition(anyInt())).thenAnswer(invocation ->
+		{
+			final int id = invocation.getArgument(0);
+			final ItemComposition composition = mock(ItemComposition.class);
+			when(composition.getName()).thenReturn(id == 995 ? "Coins" : "Item " + id);
+			when(composition.getNote()).thenReturn(-1);
+			return composition;
+		});
+		when(itemManager.getItemPrice(anyInt())).thenAnswer(invocation ->
+		{
+			final int id = invocation.getArgument(0);
+			return id < 0 ? 0 : id == 995 ? 1 : 25_000;
+		});
+
+		final OsrsKillboardConfig config = new OsrsKillboardConfig()
+		{
+		};
+		when(killboardClient.getCircuitBreaker()).thenReturn(new OsrsKillboardCircuitBreaker());
+		when(killboardClient.getMetrics()).thenReturn(metrics);
+
+		Guice.createInjector(binder ->
+		{
+			binder.bind(Client.class).toInstance(client);
+			binder.bind(OsrsKillboardConfig.class).toInstance(config);
+			binder.bind(ClientToolbar.class).toInstance(mock(ClientToolbar.class));
+			binder.bind(ItemManager.class).toInstance(itemManager);
+			binder.bind(SpriteManager.class).toInstance(mock(SpriteManager.class));
+			binder.bind(ClientThread.class).toInstance(mock(ClientThread.class));
+			binder.bind(ScheduledExecutorService.class).toInstance(executor);
+			binder.bind(OsrsKillboardClient.class).toInstance(killboardClient);
+			binder.bind(OsrsKillboardHistorySync.class).toInstance(mock(OsrsKillboardHistorySync.class));
+		}).injectMembers(plugin);
+		plugin.setSpillDir(spillDir);
+	}
+
+	void start()
+	{
+		plugin.startUp();
+	}
+
+	void stop()
+	{
+		plugin.shutDown();
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Moves the game on a tick, events of an earlier tick are no longer duplicates of later ones.
+	 */
+	void nextTick()
+	{
+		tick++;
+	}
+
+	/**
+	 * Fills a container with the given items, ids and quantities in turn, or empties it without any.
+	 */
+	ItemContainer setContainer(int containerId, int... idsAndQuantities)
+	{
+		final Item[] items = new Item[idsAndQuantities.length / 2];
+		for (int i = 0; i < items.length; i++)
+		{
+			items[i] = new Item(idsAndQuantities[2 * i], idsAndQuantities[2 * i + 1]);
+		}
+
+		final ItemContainer container = mock(ItemContainer.class);
+		when(container.getId()).thenReturn(containerId);
+		when(container.getItems()).thenReturn(items);
+		when(container.count()).thenReturn(items.length);
+		when(container.contains(anyInt())).thenAnswer(invocation ->
+		{
+			final int id = invocation.getArgument(0);
+			for (Item item : items)
+			{
+				if (item.getId() == id)
+				{
+					return true;
+				}
+			}
+			return false;
+		});
+		containers.put(containerId, container);
+		return container;
+	}
+
+	/**
+	 * A player wearing a helm and the given weapon, skulled if the skull icon is not -1.
+	 */
+	static Player player(String name, int combatLevel, int skullIcon, int weapon)
+	{
+		final PlayerComposition composition = mock(PlayerComposition.class);
+		when(composition.getEquipmentId(any())).thenReturn(-1);
+		when(composition.getEquipmentId(KitType.HEAD)).thenReturn(10828);
+		when(composition.getEquipmentId(KitType.WEAPON)).thenReturn(weapon);
+
+		final Player player = mock(Player.class);
+		when(player.getName()).thenReturn(name);
+		when(player.getCombatLevel()).thenReturn(combatLevel);
+		when(player.getSkullIcon()).thenReturn(skullIcon);
+		when(player.getPlayerComposition()).thenReturn(composition);
+		when(player.getLocalLocation()).thenReturn(new LocalPoint(6464, 6464, -1));
+		when(player.getWorldLocation()).thenReturn(new WorldPoint(3093, 3523, 0));
+		return player;
+	}
+}
@@ -0,0 +1,129 @@
+package com.osrskillboard;
+
+import com.osrskillboard.OsrsKillboardEndpointFixtures.PostSender;
+import net.runelite.client.config.Range;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.osrskillboard.OsrsKillboardEndpointFixtures.submission;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the additional endpoint settings of the performance section do what they say, by what a
+ * local server sees rather than by how long a burst takes: how many kills are in flight at once and how
+ * often a failing kill is sent.
+ */
+public class OsrsKillboardProfileTest
+{
+	private static final int KILLS = 32;
+	// Long enough for every permitted request to arrive while the first ones are held
+	private static final long RESPONSE_DELAY_MILLIS = 100;
+
+	private final OkHttpClient httpClient = new OkHttpClient();
+	private final OsrsKillboardConfig defaults = new OsrsKillboardConfig()
+	{
+	};
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger peakInFlight = new AtomicInteger();
+	private volatile int responseCode = 200;
+	private MockWebServer server;
+
+	@Before
+	public void before() throws IOException
+	{
+		server = new MockWebServer();
+		server.setDispatcher(new Dispatcher()
+		{
+			@Override
+			public MockResponse dispatch(RecordedRequest request) throws InterruptedException
+			{
+				peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+				try
+				{
+					Thread.sleep(RESPONSE_DELAY_MILLIS);
+				}
+				finally
+				{
+					inFlight.decrementAndGet();
+				}
+				return new MockResponse().setResponseCode(responseCode);
+			}
+		});
+		server.start();
+	}
+
+	@After
+	public void after() throws IOException
+	{
+		server.shutdown();
+	}
+
+	@Test(timeout = 60_000)
+	public void sendsAsManyKillsAtOnceAsAllowed() throws Exception
+	{
+		final Range range = OsrsKillboardConfig.class.getMethod("additionalEndpointConcurrency").getAnnotation(Range.class);
+
+		for (int concurrency : new int[]{range.min(), defaults.additionalEndpointConcurrency(), range.max()})
+		{
+			peakInFlight.set(0);
+			final PostSender sender = new PostSender(KILLS);
+			final OsrsKillboardEndpoint endpoint = endpoint(concurrency, defaults.additionalEndpointRetries(), sender);
+			try
+			{
+				for (int i = 0; i < KILLS; i++)
+				{
+					assertTrue(endpoint.offer(submission("Victim " + i)));
+				}
+				assertTrue(sender.sent.await(30, TimeUnit.SECONDS));
+				assertEquals("Kills in flight at once with " + concurrency + " allowed", concurrency, peakInFlight.get());
+			}
+			finally
+			{
+				endpoint.shutDown(System.nanoTime());
+			}
+		}
+	}
+
+	@Test(timeout = 60_000)
+	public void retriesFailingKillAsOftenAsAllowed() throws Exception
+	{
+		// Refused rather than a server error, so the circuit breaker stays closed and every retry is made
+		responseCode = 404;
+
+		// The backoff doubles with every retry, the most allowed would take minutes
+		for (int retries : new int[]{0, defaults.additionalEndpointRetries()})
+		{
+			final int before = server.getRequestCount();
+			final PostSender sender = new PostSender(1);
+			final OsrsKillboardEndpoint endpoint = endpoint(1, retries, sender);
+			try
+			{
+				assertTrue(endpoint.offer(submission("Victim")));
+				assertTrue(sender.failed.await(30, TimeUnit.SECONDS));
+				assertEquals("Requests with " + retries + " retries", retries + 1, server.getRequestCount() - before);
+				assertEquals(1, endpoint.getMetrics().getFailed());
+			}
+			finally
+			{
+				endpoint.shutDown(System.nanoTime());
+			}
+		}
+	}
+
+	private OsrsKillboardEndpoint endpoint(int concurrency, int retries, PostSender sender)
+	{
+		return new OsrsKillboardEndpoint("profile", server.url("/"), httpClient, concurrency, retries,
+			new OsrsKillboardCircuitBreaker(), new OsrsKillboardSubmissionMetrics(), sender);
+	}
+}
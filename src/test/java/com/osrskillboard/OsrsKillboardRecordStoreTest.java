@@ -0,0 +1,283 @@
+package com.osrskillboard;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OsrsKillboardRecordStoreTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void putsSyncedRecordsBeforeNewerSessionRecords()
+	{
+		final OsrsKillboardRecordStore store = store(10);
+		store.add(record(100));
+		store.add(record(200));
+
+		store.addAll(Arrays.asList(record(150), record(50)));
+
+		assertEquals(Arrays.asList(50L, 100L, 150L, 200L), timestamps(store.snapshot()));
+	}
+
+	@Test
+	public void appendsRecordsNewerThanAllHeld()
+	{
+		final OsrsKillboardRecordStore store = store(10);
+		store.add(record(100));
+		final OsrsKillboardRecordStore.Snapshot before = store.snapshot();
+
+		store.addAll(Arrays.asList(record(300), record(200)));
+
+		assertEquals(Arrays.asList(100L, 200L, 300L), timestamps(store.snapshot()));
+		// Earlier snapshots are left as they were
+		assertEquals(Arrays.asList(100L), timestamps(before));
+	}
+
+	@Test
+	public void mergesSyncedRecordsWithSpilledOnes()
+	{
+		final OsrsKillboardRecordStore store = store(2);
+		store.add(record(100));
+		store.add(record(200));
+		store.add(record(300));
+
+		store.addAll(Arrays.asList(record(250), record(50)));
+
+		final List<Long> all = new ArrayList<>();
+		store.forEach(r -> all.add(r.getTimestamp()));
+		assertEquals(Arrays.asList(50L, 100L, 200L, 250L, 300L), all);
+		assertEquals(Arrays.asList(250L, 300L), timestamps(store.snapshot()));
+		assertEquals(5, store.size());
+	}
+
+	@Test
+	public void keepsItemIdsOfSpilledRecords()
+	{
+		final OsrsKillboardRecordStore store = store(1);
+		store.add(new OsrsKillboardRecord("Victim", "(lvl-126)", new OsrsKillboardItem[]{new OsrsKillboardItem(4151, "Abyssal whip", 1, 1_500_000)},
+			100, "kill-100", 0));
+		store.add(record(200));
+
+		final int[] ids = store.snapshot().distinctItemIds();
+		Arrays.sort(ids);
+		assertArrayEquals(new int[]{995, 4151}, ids);
+	}
+
+	@Test
+	public void keepsTotalsOfSpilledRecords()
+	{
+		final OsrsKillboardRecordStore store = store(1);
+		store.add(record(100));
+		store.add(new OsrsKillboardRecord("Victim", "(lvl-126)", new OsrsKillboardItem[0], 200, "kill-200", 0));
+		store.add(record(300));
+
+		assertEquals(1, store.getSpilledKills());
+		assertEquals(1_000, store.getSpilledKillValue());
+		assertEquals(1_000, store.getSpilledCurrentValue());
+
+		store.removeIf(r -> r.getTimestamp() == 100);
+		assertEquals(0, store.getSpilledKills());
+		assertEquals(0, store.getSpilledKillValue());
+	}
+
+	@Test
+	public void updatesSpilledRecordsOnTheExecutor()
+	{
+		final OsrsKillboardRecordStore store = store(1);
+		store.add(record(100));
+		store.add(record(200));
+
+		final List<Runnable> tasks = new ArrayList<>();
+		final AtomicBoolean done = new AtomicBoolean();
+		store.updateSpilled(r -> r.setCurrentValue(5_000), tasks::add, () -> done.set(true));
+
+		// Nothing is read or written until the executor runs it
+		assertEquals(1_000, store.getSpilledCurrentValue());
+		assertEquals(1, tasks.size());
+		tasks.get(0).run();
+
+		assertTrue(done.get());
+		assertEquals(5_000, store.getSpilledCurrentValue());
+		final List<Long> values = new ArrayList<>();
+		store.forEach(r -> values.add(r.getCurrentValue()));
+		assertEquals(Arrays.asList(5_000L, 1_000L), values);
+	}
+
+	@Test
+	public void visitsSpilledAndHeldRecordsOnTheExecutor()
+	{
+		final OsrsKillboardRecordStore store = store(2);
+		store.add(record(100));
+		store.add(record(200));
+		store.add(record(300));
+
+		final List<Runnable> tasks = new ArrayList<>();
+		final List<Long> visited = new ArrayList<>();
+		final AtomicBoolean done = new AtomicBoolean();
+		store.forEachAsync(r -> visited.add(r.getTimestamp()), tasks::add, () -> done.set(true));
+
+		// Added after the call, so not part of it
+		store.add(record(400));
+		assertEquals(List.of(), visited);
+		tasks.get(0).run();
+
+		assertTrue(done.get());
+		assertEquals(Arrays.asList(100L, 200L, 300L), visited);
+	}
+
+	@Test
+	public void storesInOneDirectoryKeepTheirOwnSpilledRecords()
+	{
+		final OsrsKillboardRecordStore closed = OsrsKillboardRecordStore.create(1, folder.getRoot());
+		closed.add(record(100));
+		closed.add(record(200));
+		final OsrsKillboardRecordStore open = OsrsKillboardRecordStore.create(1, folder.getRoot());
+		open.add(record(300));
+		open.add(record(400));
+
+		// A store left behind by an earlier panel neither deletes nor appends to the file of a later one
+		closed.close();
+		closed.add(record(500));
+		open.add(record(600));
+
+		final List<Long> all = new ArrayList<>();
+		open.forEach(r -> all.add(r.getTimestamp()));
+		assertEquals(Arrays.asList(300L, 400L, 600L), all);
+		assertEquals(1, folder.getRoot().listFiles().length);
+	}
+
+	@Test
+	public void cutsShortSpillFileBackToWholeRecords() throws Exception
+	{
+		final File spillFile = new File(folder.getRoot(), "records.spill");
+		final OsrsKillboardRecordStore store = new OsrsKillboardRecordStore(1, spillFile);
+		store.add(record(100));
+		store.add(new OsrsKillboardRecord("Victim", "(lvl-126)", new OsrsKillboardItem[]{new OsrsKillboardItem(4151, "Abyssal whip", 1, 1_500_000)},
+			200, "kill-200", 0));
+		final long firstRecordLength = spillFile.length();
+		store.add(record(300));
+
+		// Cut off in the middle of the whip record
+		try (RandomAccessFile file = new RandomAccessFile(spillFile, "rw"))
+		{
+			file.setLength(firstRecordLength + 3);
+		}
+
+		final List<Long> all = new ArrayList<>();
+		store.forEach(r -> all.add(r.getTimestamp()));
+		assertEquals(Arrays.asList(100L, 300L), all);
+		assertArrayEquals(new int[]{995}, store.snapshot().distinctItemIds());
+		assertEquals(1_000, store.getSpilledKillValue());
+
+		// Spilled after the cut, so it has to line up with the records left
+		store.add(record(400));
+		all.clear();
+		store.forEach(r -> all.add(r.getTimestamp()));
+		assertEquals(Arrays.asList(100L, 300L, 400L), all);
+	}
+
+	@Test(timeout = 60_000)
+	public void readersSeeConsistentSnapshotsWhileRecordsChange() throws Exception
+	{
+		final int writes = 20_000;
+		final int resetEvery = 1_500;
+		final OsrsKillboardRecordStore store = store(100);
+		final AtomicBoolean writing = new AtomicBoolean(true);
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		final List<Thread> readers = new ArrayList<>();
+		for (int i = 0; i < 4; i++)
+		{
+			final Thread reader = new Thread(() ->
+			{
+				try
+				{
+					long lastVersion = -1;
+					while (writing.get())
+					{
+						final OsrsKillboardRecordStore.Snapshot snapshot = store.snapshot();
+						assertTrue(snapshot.getVersion() >= lastVersion);
+						lastVersion = snapshot.getVersion();
+
+						// Written oldest first, so any snapshot holds increasing timestamps
+						int count = 0;
+						long lastTimestamp = -1;
+						for (OsrsKillboardRecord record : snapshot)
+						{
+							assertNotNull(record);
+							assertTrue(record.getTimestamp() > lastTimestamp);
+							lastTimestamp = record.getTimestamp();
+							count++;
+						}
+						assertEquals(snapshot.getSize(), count);
+						snapshot.distinctItemIds();
+						Thread.yield();
+					}
+				}
+				catch (Throwable t)
+				{
+					failure.compareAndSet(null, t);
+				}
+			});
+			reader.start();
+			readers.add(reader);
+		}
+
+		try
+		{
+			for (int i = 1; i <= writes; i++)
+			{
+				store.add(record(i));
+				if (i % resetEvery == 0)
+				{
+					store.clear();
+				}
+			}
+		}
+		finally
+		{
+			writing.set(false);
+			for (Thread reader : readers)
+			{
+				reader.join();
+			}
+		}
+
+		assertNull(failure.get());
+		assertEquals(writes % resetEvery, store.size());
+	}
+
+	private OsrsKillboardRecordStore store(int capacity)
+	{
+		return new OsrsKillboardRecordStore(capacity, new File(folder.getRoot(), "records.spill"));
+	}
+
+	private static OsrsKillboardRecord record(long timestamp)
+	{
+		final OsrsKillboardItem[] items = {new OsrsKillboardItem(995, "Coins", 1_000, 1_000)};
+		return new OsrsKillboardRecord("Victim", "(lvl-126)", items, timestamp, "kill-" + timestamp, 0);
+	}
+
+	private static List<Long> timestamps(Iterable<OsrsKillboardRecord> records)
+	{
+		final List<Long> timestamps = new ArrayList<>();
+		records.forEach(r -> timestamps.add(r.getTimestamp()));
+		return timestamps;
+	}
+}
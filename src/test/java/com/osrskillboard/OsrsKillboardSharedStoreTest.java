@@ -0,0 +1,327 @@
+package com.osrskillboard;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OsrsKillboardSharedStoreTest
+{
+	private static final int SIZE = 4096;
+	// Room for five entries of four bytes after the header
+	private static final int SMALL_SIZE = 24 + 5 * (Integer.BYTES + 4);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File logFile;
+	private File senderFile;
+
+	@Before
+	public void before()
+	{
+		logFile = new File(folder.getRoot(), "shared.log");
+		senderFile = new File(folder.getRoot(), "shared.sender");
+	}
+
+	@Test
+	public void skipsEntriesAppendedBeforeOpening() throws Exception
+	{
+		try (OsrsKillboardSharedStore first = open(SIZE))
+		{
+			assertTrue(first.append(bytes("old")));
+
+			try (OsrsKillboardSharedStore second = open(SIZE))
+			{
+				assertEquals(List.of(), read(second));
+				assertTrue(first.append(bytes("new")));
+				assertEquals(List.of("new"), read(second));
+				assertEquals(List.of("old", "new"), read(first));
+			}
+		}
+
+		// A restart doesn't show the previous session again
+		try (OsrsKillboardSharedStore reopened = open(SIZE))
+		{
+			assertEquals(List.of(), read(reopened));
+		}
+	}
+
+	@Test
+	public void takesEntriesAppendedBeforeOpening() throws Exception
+	{
+		try (OsrsKillboardSharedStore first = open(SIZE))
+		{
+			assertTrue(first.append(bytes("unsent")));
+		}
+
+		try (OsrsKillboardSharedStore second = open(SIZE))
+		{
+			assertTrue(second.isSender());
+			assertEquals(List.of("unsent"), take(second));
+			assertEquals(List.of(), take(second));
+		}
+	}
+
+	@Test
+	public void stopsTakingAtRefusedEntry() throws Exception
+	{
+		try (OsrsKillboardSharedStore store = open(SIZE))
+		{
+			assertTrue(store.append(bytes("a")));
+			assertTrue(store.append(bytes("b")));
+			assertTrue(store.append(bytes("c")));
+
+			final List<String> taken = new ArrayList<>();
+			store.take(entry -> !string(entry.getData()).equals("b") && taken.add(string(entry.getData())));
+			assertEquals(List.of("a"), taken);
+			assertEquals(List.of("b", "c"), take(store));
+		}
+	}
+
+	@Test
+	public void nextSenderTakesIncompleteEntriesAgain() throws Exception
+	{
+		final OsrsKillboardSharedStore first = open(SIZE);
+		try (OsrsKillboardSharedStore second = open(SIZE))
+		{
+			assertTrue(first.append(bytes("sent")));
+			assertTrue(first.append(bytes("sending")));
+			assertTrue(first.isSender());
+
+			final List<OsrsKillboardSharedStore.Entry> taken = new ArrayList<>();
+			first.take(taken::add);
+			assertEquals(2, taken.size());
+			assertTrue(taken.get(0).complete(null));
+			// Taken but not completed, not handed out twice by the same sender
+			assertEquals(List.of(), take(first));
+
+			first.close();
+			assertTrue(second.isSender());
+			assertEquals(List.of("sending"), take(second));
+			assertEquals(List.of(), take(second));
+		}
+	}
+
+	@Test
+	public void appendsResultOnCompletion() throws Exception
+	{
+		try (OsrsKillboardSharedStore sender = open(SIZE);
+			OsrsKillboardSharedStore reader = open(SIZE))
+		{
+			assertTrue(sender.append(bytes("kill-1")));
+			assertTrue(sender.isSender());
+
+			final List<OsrsKillboardSharedStore.Entry> taken = new ArrayList<>();
+			sender.take(taken::add);
+			assertTrue(taken.get(0).complete(bytes("kill-1 logged")));
+			assertEquals(List.of("kill-1", "kill-1 logged"), read(reader));
+		}
+	}
+
+	@Test
+	public void completingAfterCloseLeavesEntryForNextSender() throws Exception
+	{
+		final OsrsKillboardSharedStore first = open(SIZE);
+		assertTrue(first.append(bytes("kill-1")));
+		assertTrue(first.isSender());
+		final List<OsrsKillboardSharedStore.Entry> taken = new ArrayList<>();
+		first.take(taken::add);
+		first.close();
+
+		assertFalse(taken.get(0).complete(bytes("kill-1 logged")));
+		try (OsrsKillboardSharedStore second = open(SIZE))
+		{
+			assertTrue(second.isSender());
+			assertEquals(List.of("kill-1"), take(second));
+		}
+	}
+
+	@Test
+	public void electsOneSenderPerMachine() throws Exception
+	{
+		final OsrsKillboardSharedStore first = open(SIZE);
+		try (OsrsKillboardSharedStore second = open(SIZE))
+		{
+			assertTrue(first.isSender());
+			assertFalse(second.isSender());
+
+			first.close();
+			assertTrue(second.isSender());
+		}
+	}
+
+	@Test
+	public void startsNewGenerationOnceFullAndTaken() throws Exception
+	{
+		try (OsrsKillboardSharedStore writer = open(SMALL_SIZE);
+			OsrsKillboardSharedStore reader = open(SMALL_SIZE))
+		{
+			for (int i = 0; i < 5; i++)
+			{
+				assertTrue(writer.append(bytes("old" + i)));
+			}
+			assertEquals(5, read(reader).size());
+
+			// Full of entries nobody took yet
+			assertFalse(writer.append(bytes("new0")));
+
+			assertEquals(5, take(writer).size());
+			assertTrue(writer.append(bytes("new0")));
+			assertEquals(List.of("new0"), read(reader));
+			assertEquals(List.of("new0"), take(writer));
+		}
+	}
+
+	@Test(timeout = 60_000)
+	public void showsEntriesOfAnotherProcess() throws Exception
+	{
+		try (OsrsKillboardSharedStore store = open(SIZE))
+		{
+			runOtherClient("append", "kill-1", "kill-2");
+			assertEquals(List.of("kill-1", "kill-2"), read(store));
+		}
+
+		// Appended by a session that ended before this one opened
+		runOtherClient("append", "kill-3");
+		try (OsrsKillboardSharedStore store = open(SIZE))
+		{
+			assertEquals(List.of(), read(store));
+			runOtherClient("append", "kill-4");
+			assertEquals(List.of("kill-4"), read(store));
+		}
+	}
+
+	@Test(timeout = 60_000)
+	public void hasOneSenderAcrossProcesses() throws Exception
+	{
+		try (OsrsKillboardSharedStore store = open(SIZE))
+		{
+			assertTrue(store.isSender());
+			assertEquals("false", runOtherClient("sender"));
+			assertTrue(store.append(bytes("kill-1")));
+		}
+
+		// Taken by the other process once this one gave the role up
+		assertEquals("kill-1", runOtherClient("take"));
+		try (OsrsKillboardSharedStore store = open(SIZE))
+		{
+			assertTrue(store.isSender());
+			assertEquals(List.of(), take(store));
+		}
+	}
+
+	private OsrsKillboardSharedStore open(int size) throws Exception
+	{
+		return new OsrsKillboardSharedStore(logFile, senderFile, size);
+	}
+
+	private static List<String> read(OsrsKillboardSharedStore store)
+	{
+		final List<String> entries = new ArrayList<>();
+		store.read(entry -> entries.add(string(entry)));
+		return entries;
+	}
+
+	/**
+	 * Takes and completes every entry not taken yet.
+	 */
+	private static List<String> take(OsrsKillboardSharedStore store)
+	{
+		final List<OsrsKillboardSharedStore.Entry> taken = new ArrayList<>();
+		store.take(taken::add);
+
+		final List<String> entries = new ArrayList<>();
+		for (OsrsKillboardSharedStore.Entry entry : taken)
+		{
+			assertTrue(entry.complete(null));
+			entries.add(string(entry.getData()));
+		}
+		return entries;
+	}
+
+	private static byte[] bytes(String entry)
+	{
+		return entry.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String string(byte[] entry)
+	{
+		return new String(entry, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Runs a command against the same files from another JVM and returns what it printed.
+	 */
+	private String runOtherClient(String... command) throws Exception
+	{
+		final List<String> args = new ArrayList<>(Arrays.asList(
+			Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+			"-cp", System.getProperty("java.class.path"),
+			OtherClient.class.getName(), logFile.getPath(), senderFile.getPath()));
+		args.addAll(Arrays.asList(command));
+
+		final Process process = new ProcessBuilder(args)
+			.redirectError(ProcessBuilder.Redirect.INHERIT)
+			.start();
+		final String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+		assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+		assertEquals(output, 0, process.exitValue());
+		return output;
+	}
+
+	/**
+	 * A client in another JVM: opens the store, runs one command and exits.
+	 */
+	public static final class OtherClient
+	{
+		public static void main(String[] args) throws Exception
+		{
+			try (OsrsKillboardSharedStore store = new OsrsKillboardSharedStore(new File(args[0]), new File(args[1]), SIZE))
+			{
+				switch (args[2])
+				{
+					case "append":
+						for (int i = 3; i < args.length; i++)
+						{
+							if (!store.append(bytes(args[i])))
+							{
+								System.exit(2);
+							}
+						}
+						break;
+					case "sender":
+						System.out.println(store.isSender());
+						break;
+					case "take":
+						if (!store.isSender())
+						{
+							System.exit(3);
+						}
+						final List<OsrsKillboardSharedStore.Entry> taken = new ArrayList<>();
+						store.take(taken::add);
+						for (OsrsKillboardSharedStore.Entry entry : taken)
+						{
+							entry.complete(null);
+							System.out.println(string(entry.getData()));
+						}
+						break;
+					default:
+						System.exit(1);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package com.osrskillboard;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OsrsKillboardSubmissionQueueTest
+{
+	private static final int PRODUCERS = 8;
+	private static final int PER_PRODUCER = 100_000;
+	// Small enough that producers keep running into a full queue
+	private static final int CAPACITY = 64;
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsCapacityThatIsNotAPowerOfTwo()
+	{
+		new OsrsKillboardSubmissionQueue<>(48);
+	}
+
+	@Test
+	public void refusesOffersWhenFull()
+	{
+		final OsrsKillboardSubmissionQueue<Integer> queue = new OsrsKillboardSubmissionQueue<>(4);
+		for (int i = 0; i < 4; i++)
+		{
+			assertTrue(queue.offer(i));
+		}
+		assertFalse(queue.offer(4));
+		assertEquals(4, queue.size());
+
+		assertEquals(Integer.valueOf(0), queue.poll());
+		assertTrue(queue.offer(4));
+		for (int i = 1; i <= 4; i++)
+		{
+			assertEquals(Integer.valueOf(i), queue.poll());
+		}
+		assertNull(queue.poll());
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test(timeout = 60_000)
+	public void keepsEveryProducersElementsInOrder() throws Exception
+	{
+		final OsrsKillboardSubmissionQueue<Long> queue = new OsrsKillboardSubmissionQueue<>(CAPACITY);
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final List<Thread> producers = new ArrayList<>();
+
+		for (int p = 0; p < PRODUCERS; p++)
+		{
+			final long producer = p;
+			final Thread thread = new Thread(() ->
+			{
+				try
+				{
+					start.await();
+					for (int seq = 0; seq < PER_PRODUCER; seq++)
+					{
+						final Long element = producer << 32 | seq;
+						while (!queue.offer(element))
+						{
+							Thread.yield();
+						}
+					}
+				}
+				catch (Throwable t)
+				{
+					failure.compareAndSet(null, t);
+				}
+			}, "producer-" + p);
+			thread.start();
+			producers.add(thread);
+		}
+
+		final int[] next = new int[PRODUCERS];
+		long total = 0;
+		start.countDown();
+		while (total < (long) PRODUCERS * PER_PRODUCER)
+		{
+			final Long element = queue.poll();
+			if (element == null)
+			{
+				if (failure.get() != null)
+				{
+					throw new AssertionError("Producer failed", failure.get());
+				}
+				Thread.yield();
+				continue;
+			}
+
+			assertTrue("Size out of bounds", queue.size() <= CAPACITY);
+			final int producer = (int) (element >>> 32);
+			final int seq = (int) (long) element;
+			assertEquals("Element of producer " + producer + " out of order", next[producer], seq);
+			next[producer]++;
+			total++;
+		}
+
+		for (Thread thread : producers)
+		{
+			thread.join();
+		}
+
+		for (int p = 0; p < PRODUCERS; p++)
+		{
+			assertEquals("Elements of producer " + p, PER_PRODUCER, next[p]);
+		}
+		assertNull(queue.poll());
+		assertTrue(queue.isEmpty());
+		assertNull(failure.get());
+	}
+}